@@ -0,0 +1,113 @@
+package org.nanopub.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.nanopub.MultiNanopubRdfHandler;
+import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+import org.nanopub.Nanopub;
+import org.nanopub.NanopubImpl;
+import org.nanopub.NanopubUtils;
+import org.nanopub.trusty.MakeTrustyNanopub;
+import org.nanopub.trusty.TrustyNanopubUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for parsing, constructing, serializing, and making trusty a single nanopub with a
+ * given number of assertion triples.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoreBenchmark {
+
+	@Param({"10", "100", "1000"})
+	public int size;
+
+	private byte[] trigBytes;
+	private byte[] nquadsBytes;
+	private List<Statement> statements;
+	private Nanopub nanopub;
+	private Nanopub trustyNanopub;
+
+	@Setup
+	public void setup() throws Exception {
+		NanopubImpl.ensureLoaded();
+		String trig = SyntheticNanopubs.createTrig("np" + size, size);
+		trigBytes = trig.getBytes("UTF-8");
+		nanopub = new NanopubImpl(trig, RDFFormat.TRIG);
+		nquadsBytes = NanopubUtils.writeToString(nanopub, RDFFormat.NQUADS).getBytes("UTF-8");
+		statements = NanopubUtils.getStatements(nanopub);
+		trustyNanopub = MakeTrustyNanopub.transform(nanopub);
+		if (!TrustyNanopubUtils.isValidTrustyNanopub(trustyNanopub)) {
+			throw new RuntimeException("Transformed nanopub is not trusty: " + trustyNanopub.getUri());
+		}
+	}
+
+	@Benchmark
+	public void parseTrig(Blackhole bh) throws Exception {
+		parse(RDFFormat.TRIG, trigBytes, bh);
+	}
+
+	@Benchmark
+	public void parseNquads(Blackhole bh) throws Exception {
+		parse(RDFFormat.NQUADS, nquadsBytes, bh);
+	}
+
+	@Benchmark
+	public Nanopub construct() throws Exception {
+		return new NanopubImpl(statements);
+	}
+
+	@Benchmark
+	public List<Statement> getStatements() {
+		return NanopubUtils.getStatements(nanopub);
+	}
+
+	@Benchmark
+	public int writeTrig() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(trigBytes.length * 2);
+		NanopubUtils.writeToStream(nanopub, out, RDFFormat.TRIG);
+		return out.size();
+	}
+
+	@Benchmark
+	public Nanopub makeTrusty() throws Exception {
+		return MakeTrustyNanopub.transform(nanopub);
+	}
+
+	@Benchmark
+	public boolean checkTrusty() {
+		return TrustyNanopubUtils.isValidTrustyNanopub(trustyNanopub);
+	}
+
+	static void parse(RDFFormat format, byte[] bytes, final Blackhole bh) throws Exception {
+		MultiNanopubRdfHandler.process(format, new ByteArrayInputStream(bytes), new NanopubHandler() {
+
+			@Override
+			public void handleNanopub(Nanopub np) {
+				bh.consume(np);
+			}
+
+		});
+	}
+
+}
@@ -0,0 +1,51 @@
+package org.nanopub.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.nanopub.NanopubImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks parsing a multi-nanopub file of many small nanopubs, which is the typical case for
+ * dumps and fetched indexes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiNanopubBenchmark {
+
+	@Param({"1000"})
+	public int count;
+
+	@Param({"10"})
+	public int size;
+
+	private byte[] trigBytes;
+
+	@Setup
+	public void setup() throws Exception {
+		NanopubImpl.ensureLoaded();
+		trigBytes = SyntheticNanopubs.createMultiTrig(count, size).getBytes("UTF-8");
+	}
+
+	@Benchmark
+	public void parseTrig(Blackhole bh) throws Exception {
+		CoreBenchmark.parse(RDFFormat.TRIG, trigBytes, bh);
+	}
+
+}
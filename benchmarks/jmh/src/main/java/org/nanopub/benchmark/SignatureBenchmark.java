@@ -0,0 +1,77 @@
+package org.nanopub.benchmark;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.nanopub.Nanopub;
+import org.nanopub.NanopubImpl;
+import org.nanopub.extra.security.NanopubSignatureElement;
+import org.nanopub.extra.security.SignatureAlgorithm;
+import org.nanopub.extra.security.SignatureUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for signing nanopubs and verifying their signatures. ED25519 can be added with
+ * "-p algorithm=ED25519" when running on Java 15 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureBenchmark {
+
+	@Param({"RSA", "DSA"})
+	public String algorithm;
+
+	@Param({"10", "1000"})
+	public int size;
+
+	private SignatureAlgorithm signatureAlgorithm;
+	private KeyPair key;
+	private Nanopub nanopub;
+	private Nanopub signedNanopub;
+
+	@Setup
+	public void setup() throws Exception {
+		NanopubImpl.ensureLoaded();
+		signatureAlgorithm = SignatureAlgorithm.valueOf(algorithm);
+		KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(signatureAlgorithm.getKeyAlgorithmName());
+		if (signatureAlgorithm == SignatureAlgorithm.ED25519) {
+			keyPairGenerator.initialize(255);
+		} else {
+			keyPairGenerator.initialize(2048);
+		}
+		key = keyPairGenerator.genKeyPair();
+		nanopub = new NanopubImpl(SyntheticNanopubs.createTrig("np" + size, size), RDFFormat.TRIG);
+		signedNanopub = SignatureUtils.createSignedNanopub(nanopub, signatureAlgorithm, key, null);
+		if (!verify()) {
+			throw new RuntimeException("Signature of signed nanopub is not valid: " + signedNanopub.getUri());
+		}
+	}
+
+	@Benchmark
+	public Nanopub sign() throws Exception {
+		return SignatureUtils.createSignedNanopub(nanopub, signatureAlgorithm, key, null);
+	}
+
+	@Benchmark
+	public boolean verify() throws Exception {
+		NanopubSignatureElement se = SignatureUtils.getSignatureElement(signedNanopub);
+		return SignatureUtils.hasValidSignature(se);
+	}
+
+}
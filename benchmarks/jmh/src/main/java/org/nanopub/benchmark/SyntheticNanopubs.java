@@ -0,0 +1,67 @@
+package org.nanopub.benchmark;
+
+/**
+ * Creates nanopubs of a given size in TriG notation, to be used as benchmark input.
+ */
+public class SyntheticNanopubs {
+
+	private SyntheticNanopubs() {}  // no instances allowed
+
+	public static final String BASE_URI = "http://example.org/np/";
+
+	/**
+	 * Returns a nanopub with the given number of triples in the assertion graph. The provenance and
+	 * pubinfo graphs have a fixed size.
+	 */
+	public static String createTrig(String name, int assertionSize) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("@prefix this: <" + BASE_URI + name + "> .\n");
+		sb.append("@prefix sub: <" + BASE_URI + name + "#> .\n");
+		sb.append("@prefix np: <http://www.nanopub.org/nschema#> .\n");
+		sb.append("@prefix prov: <http://www.w3.org/ns/prov#> .\n");
+		sb.append("@prefix dct: <http://purl.org/dc/terms/> .\n");
+		sb.append("@prefix xsd: <http://www.w3.org/2001/XMLSchema#> .\n");
+		sb.append("@prefix ex: <http://example.org/> .\n\n");
+		sb.append("sub:Head {\n");
+		sb.append("  this: np:hasAssertion sub:assertion ;\n");
+		sb.append("    np:hasProvenance sub:provenance ;\n");
+		sb.append("    np:hasPublicationInfo sub:pubinfo ;\n");
+		sb.append("    a np:Nanopublication .\n");
+		sb.append("}\n\n");
+		sb.append("sub:assertion {\n");
+		for (int i = 0 ; i < assertionSize ; i++) {
+			if (i % 3 == 0) {
+				sb.append("  ex:thing" + i + " ex:relation" + (i % 10) + " ex:thing" + (i + 1) + " .\n");
+			} else if (i % 3 == 1) {
+				sb.append("  sub:item" + i + " ex:label \"Item number " + i + "\" .\n");
+			} else {
+				sb.append("  ex:thing" + i + " ex:value \"" + i + "\"^^xsd:integer .\n");
+			}
+		}
+		sb.append("}\n\n");
+		sb.append("sub:provenance {\n");
+		sb.append("  sub:assertion prov:wasAttributedTo ex:someone ;\n");
+		sb.append("    prov:wasDerivedFrom ex:somesource .\n");
+		sb.append("}\n\n");
+		sb.append("sub:pubinfo {\n");
+		sb.append("  this: dct:created \"2019-01-01T00:00:00Z\"^^xsd:dateTime ;\n");
+		sb.append("    dct:creator ex:someone ;\n");
+		sb.append("    dct:license <https://creativecommons.org/licenses/by/4.0/> .\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the given number of nanopubs of the given size, concatenated into a single TriG
+	 * document.
+	 */
+	public static String createMultiTrig(int count, int assertionSize) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0 ; i < count ; i++) {
+			sb.append(createTrig("np" + i, assertionSize));
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
+
+}
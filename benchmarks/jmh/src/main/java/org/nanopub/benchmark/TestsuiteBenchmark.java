@@ -0,0 +1,59 @@
+package org.nanopub.benchmark;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+import org.nanopub.NanopubImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks parsing the valid files of the testsuite that is bundled with the library, which
+ * cover different formats and nanopub shapes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestsuiteBenchmark {
+
+	@Param({"simple1.trig", "simple1.nq", "simple1.xml", "aida1.trig", "3nanopubs.trig", "simple1-signed-rsa.trig"})
+	public String file;
+
+	private RDFFormat format;
+	private byte[] bytes;
+
+	@Setup
+	public void setup() throws Exception {
+		NanopubImpl.ensureLoaded();
+		format = Rio.getParserFormatForFileName(file).orElse(RDFFormat.TRIG);
+		InputStream in = TestsuiteBenchmark.class.getResourceAsStream("/testsuite/valid/" + file);
+		if (in == null) throw new RuntimeException("Testsuite file not found: " + file);
+		try {
+			bytes = IOUtils.toByteArray(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	@Benchmark
+	public void parse(Blackhole bh) throws Exception {
+		CoreBenchmark.parse(format, bytes, bh);
+	}
+
+}
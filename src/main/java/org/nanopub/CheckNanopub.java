@@ -6,6 +6,9 @@ import java.io.PrintStream;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.rdf4j.RDF4JException;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
@@ -17,6 +20,7 @@ import org.nanopub.extra.security.MalformedCryptoElementException;
 import org.nanopub.extra.security.NanopubSignatureElement;
 import org.nanopub.extra.security.SignatureUtils;
 import org.nanopub.trusty.TrustyNanopubUtils;
+import org.nanopub.trusty.VerificationCache;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
@@ -34,6 +38,15 @@ public class CheckNanopub {
 	@com.beust.jcommander.Parameter(names = "-s", description = "Load nanopubs from given SPARQL endpoint")
 	private String sparqlEndpointUrl;
 
+	@com.beust.jcommander.Parameter(names = "--threads", description = "Number of threads for checking nanopubs (output order stays the same)")
+	private int threads = 1;
+
+	@com.beust.jcommander.Parameter(names = "--cache", description = "File for remembering verified nanopubs, so they are not checked again (use 'default' for ~/.nanopub/verified-artifact-codes)")
+	private String cacheFile;
+
+	@com.beust.jcommander.Parameter(names = "--force-check", description = "Check all nanopubs again even if they are found in the cache")
+	private boolean forceCheck = false;
+
 	public static void main(String[] args) {
 		NanopubImpl.ensureLoaded();
 		CheckNanopub obj = new CheckNanopub();
@@ -58,6 +71,8 @@ public class CheckNanopub {
 	private int count;
 	private SPARQLRepository sparqlRepo;
 	private PrintStream logOut;
+	private OrderedExecutor<String> executor;
+	private VerificationCache verificationCache;
 
 	public CheckNanopub(List<String> inputNanopubFiles) {
 		this.inputNanopubs = inputNanopubFiles;
@@ -76,6 +91,50 @@ public class CheckNanopub {
 
 	public Report check() throws IOException {
 		report = new Report();
+		if (threads > 1) {
+			executor = new OrderedExecutor<String>("nanopub-check", threads, threads * 16, true,
+					new OrderedExecutor.ResultHandler<String>() {
+
+						@Override
+						public void handleResult(String message) {
+							printCheckResult(message);
+						}
+
+					});
+		}
+		boolean closeCache = false;
+		if (verificationCache == null && cacheFile != null) {
+			if (cacheFile.equals("default")) {
+				verificationCache = new VerificationCache();
+			} else {
+				verificationCache = new VerificationCache(new File(cacheFile));
+			}
+			closeCache = true;
+		}
+		if (verificationCache != null && forceCheck) {
+			verificationCache.setForceVerification(true);
+		}
+		try {
+			checkAll();
+		} finally {
+			if (executor != null) {
+				try {
+					// If reading stopped with an exception, the pending results are still reported:
+					finishChecks();
+				} finally {
+					executor.shutdown();
+					executor = null;
+				}
+			}
+			if (closeCache) {
+				verificationCache.close();
+				verificationCache = null;
+			}
+		}
+		return report;
+	}
+
+	private void checkAll() throws IOException {
 		for (String s : inputNanopubs) {
 			count = 0;
 			try {
@@ -85,11 +144,13 @@ public class CheckNanopub {
 						sparqlRepo.initialize();
 					}
 					Nanopub np = new NanopubImpl(sparqlRepo, SimpleValueFactory.getInstance().createIRI(s));
-					check(np);
+					// Content from SPARQL endpoints is not looked up in the verification cache:
+					printCheckResult(check(np, null));
 				} else {
 					if (verbose) {
 						log("Reading file: " + s + "\n");
 					}
+					final String source = (verificationCache == null ? null : VerificationCache.getSource(new File(s)));
 					MultiNanopubRdfHandler.process(new File(s), new NanopubHandler() {
 						@Override
 						public void handleNanopub(Nanopub np) {
@@ -97,19 +158,22 @@ public class CheckNanopub {
 							if (count % 100 == 0) {
 								log(count + " nanopubs...\r");
 							}
-							check(np);
+							submitCheck(np, source);
 						}
 					});
+					finishChecks();
 					if (count == 0) {
 						log("NO NANOPUB FOUND: " + s + "\n");
 						report.countError();
 					}
 				}
 			} catch (RDF4JException ex) {
+				finishChecks();
 				log("RDF ERROR: " + s + "\n");
 				if (logOut != null) ex.printStackTrace(logOut);
 				report.countError();
 			} catch (MalformedNanopubException ex) {
+				finishChecks();
 				log("INVALID NANOPUB: " + s + "\n");
 				if (logOut != null) ex.printStackTrace(logOut);
 				report.countInvalid();
@@ -122,10 +186,62 @@ public class CheckNanopub {
 				ex.printStackTrace();
 			}
 		}
-		return report;
 	}
 
-	private void check(Nanopub np) {
+	/**
+	 * Checks the nanopub right away, or, with several threads, passes it on to the thread pool.
+	 * The results are printed in the order in which the nanopubs were submitted.
+	 */
+	private void submitCheck(final Nanopub np, final String source) {
+		if (executor == null) {
+			printCheckResult(check(np, source));
+			return;
+		}
+		try {
+			executor.submit(new Callable<String>() {
+
+				@Override
+				public String call() {
+					return check(np, source);
+				}
+
+			});
+		} catch (ExecutionException ex) {
+			throw OrderedExecutor.unwrap(ex);
+		}
+	}
+
+	/**
+	 * Waits until the results of all pending checks have been printed.
+	 */
+	private void finishChecks() {
+		if (executor == null) return;
+		try {
+			executor.await();
+		} catch (ExecutionException ex) {
+			throw OrderedExecutor.unwrap(ex);
+		}
+	}
+
+	private void printCheckResult(String message) {
+		if (message != null) {
+			System.out.println(message);
+		}
+	}
+
+	/**
+	 * Checks the given nanopub and counts the result. Returns the message to be printed for this
+	 * nanopub, or null. The verification cache is only used if a source (see
+	 * VerificationCache.getSource) is given. This method can be called from several threads at the
+	 * same time.
+	 */
+	private String check(Nanopub np, String source) {
+		String ac = null;
+		if (verificationCache != null && source != null) {
+			ac = TrustyUriUtils.getArtifactCode(np.getUri().toString());
+			String message = checkCache(np, ac, source);
+			if (message != null) return (message.isEmpty() ? null : message);
+		}
 		if (TrustyNanopubUtils.isValidTrustyNanopub(np)) {
 			NanopubSignatureElement se = null;
 			NanopubSignatureElement legacySe = null;
@@ -133,34 +249,30 @@ public class CheckNanopub {
 				se = SignatureUtils.getSignatureElement(np);
 				if (se == null) legacySe = LegacySignatureUtils.getSignatureElement(np);
 			} catch (MalformedCryptoElementException ex) {
-				System.out.println("SIGNATURE IS NOT WELL-FORMED (" + ex.getMessage() + "): " + np.getUri());
 				report.countInvalidSignature();
-				return;
+				return "SIGNATURE IS NOT WELL-FORMED (" + ex.getMessage() + "): " + np.getUri();
 			}
 			if (se == null && legacySe == null) {
 				// no signature
-				if (verbose) {
-					System.out.println("Trusty (without signature): " + np.getUri());
-				}
 				report.countTrusty();
+				addToCache(ac, source, VerificationCache.TRUSTY);
+				return (verbose ? "Trusty (without signature): " + np.getUri() : null);
 			} else if (se != null) {
 				// new signature
 				boolean valid = false;
 				try {
 					valid = SignatureUtils.hasValidSignature(se);
 				} catch (GeneralSecurityException ex) {
-					System.out.println("FAILED TO CHECK SIGNATURE: " + np.getUri() + " (" + ex.getMessage() + ")");
 					report.countError();
-					return;
+					return "FAILED TO CHECK SIGNATURE: " + np.getUri() + " (" + ex.getMessage() + ")";
 				}
 				if (valid) {
-					if (verbose) {
-						System.out.println("Signed and trusty: " + np.getUri());
-					}
 					report.countSigned();
+					addToCache(ac, source, VerificationCache.SIGNED);
+					return (verbose ? "Signed and trusty: " + np.getUri() : null);
 				} else {
-					System.out.println("INVALID SIGNATURE: " + np.getUri());
 					report.countInvalidSignature();
+					return "INVALID SIGNATURE: " + np.getUri();
 				}
 			} else {
 				// legacy signature
@@ -168,31 +280,65 @@ public class CheckNanopub {
 				try {
 					valid = LegacySignatureUtils.hasValidSignature(legacySe);
 				} catch (GeneralSecurityException ex) {
-					System.out.println("FAILED TO CHECK LEGACY SIGNATURE: " + np.getUri() + " (" + ex.getMessage() + ")");
 					report.countError();
-					return;
+					return "FAILED TO CHECK LEGACY SIGNATURE: " + np.getUri() + " (" + ex.getMessage() + ")";
 				}
 				if (valid) {
-					if (verbose) {
-						System.out.println("Trusty with legacy signature: " + np.getUri());
-					}
 					report.countLegacySigned();
+					addToCache(ac, source, VerificationCache.LEGACY_SIGNED);
+					return (verbose ? "Trusty with legacy signature: " + np.getUri() : null);
 				} else {
-					System.out.println("INVALID LEGACY SIGNATURE: " + np.getUri());
 					report.countInvalidSignature();
+					return "INVALID LEGACY SIGNATURE: " + np.getUri();
 				}
 			}
 		} else if (TrustyUriUtils.isPotentialTrustyUri(np.getUri())) {
-			System.out.println("Looks like a trusty nanopub BUT VERIFICATION FAILED: " + np.getUri());
 			report.countNotTrusty();
+			return "Looks like a trusty nanopub BUT VERIFICATION FAILED: " + np.getUri();
 		} else {
-			if (verbose) {
-				System.out.println("Valid (but not trusty): " + np.getUri());
-			}
 			report.countNotTrusty();
+			return (verbose ? "Valid (but not trusty): " + np.getUri() : null);
+		}
+	}
+
+	/**
+	 * Counts the nanopub if it was found in the verification cache. Returns the message to be
+	 * printed (empty if nothing to print), or null if it needs to be checked.
+	 */
+	private String checkCache(Nanopub np, String ac, String source) {
+		if (ac == null) return null;
+		switch (verificationCache.getStatus(ac, source)) {
+			case VerificationCache.TRUSTY:
+				report.countTrusty();
+				return (verbose ? "Trusty (without signature, cached): " + np.getUri() : "");
+			case VerificationCache.SIGNED:
+				report.countSigned();
+				return (verbose ? "Signed and trusty (cached): " + np.getUri() : "");
+			case VerificationCache.LEGACY_SIGNED:
+				report.countLegacySigned();
+				return (verbose ? "Trusty with legacy signature (cached): " + np.getUri() : "");
+			default:
+				return null;
+		}
+	}
+
+	private void addToCache(String ac, String source, byte status) {
+		if (verificationCache == null || ac == null || source == null) return;
+		try {
+			verificationCache.add(ac, source, status);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
 		}
 	}
 
+	/**
+	 * Sets a cache of already verified nanopubs. Nanopubs from files that are found there with the
+	 * same artifact code and file state are not checked again, and newly verified ones are added.
+	 */
+	public void setVerificationCache(VerificationCache verificationCache) {
+		this.verificationCache = verificationCache;
+	}
+
 	public void setLogPrintStream(PrintStream logOut) {
 		this.logOut = logOut;
 	}
@@ -201,6 +347,10 @@ public class CheckNanopub {
 		this.verbose = verbose;
 	}
 
+	public void setThreadCount(int threads) {
+		this.threads = threads;
+	}
+
 	private void log(String message) {
 		if (logOut != null) {
 			logOut.print(message);
@@ -210,73 +360,75 @@ public class CheckNanopub {
 
 	public class Report {
 
-		private int signed, legacySigned, trusty, notTrusty, invalidSignature, invalid, error;
+		// Counted from several threads when checking in parallel:
+		private final LongAdder signed = new LongAdder(), legacySigned = new LongAdder(), trusty = new LongAdder(),
+				notTrusty = new LongAdder(), invalidSignature = new LongAdder(), invalid = new LongAdder(), error = new LongAdder();
 
 		private Report() {
 		}
 
 		private void countSigned() {
-			signed++;
+			signed.increment();
 		}
 
 		public int getSignedCount() {
-			return signed;
+			return signed.intValue();
 		}
 
 		private void countLegacySigned() {
-			legacySigned++;
+			legacySigned.increment();
 		}
 
 		public int getLegacySignedCount() {
-			return legacySigned;
+			return legacySigned.intValue();
 		}
 
 		private void countTrusty() {
-			trusty++;
+			trusty.increment();
 		}
 
 		public int getTrustyCount() {
-			return trusty;
+			return trusty.intValue();
 		}
 
 		private void countNotTrusty() {
-			notTrusty++;
+			notTrusty.increment();
 		}
 
 		public int getNotTrustyCount() {
-			return notTrusty;
+			return notTrusty.intValue();
 		}
 
 		private void countInvalidSignature() {
-			invalidSignature++;
+			invalidSignature.increment();
 		}
 
 		public int getInvalidSignatureCount() {
-			return invalidSignature;
+			return invalidSignature.intValue();
 		}
 
 		private void countInvalid() {
-			invalid++;
+			invalid.increment();
 		}
 
 		public int getInvalidCount() {
-			return invalid;
+			return invalid.intValue();
 		}
 
 		private void countError() {
-			error++;
+			error.increment();
 		}
 
 		public int getErrorCount() {
-			return error;
+			return error.intValue();
 		}
 
 		public int getAllValidCount() {
-			return signed + trusty + notTrusty;
+			return getSignedCount() + getTrustyCount() + getNotTrustyCount();
 		}
 
 		public int getAllInvalidCount() {
-			return invalidSignature + invalid + error;
+			return getInvalidSignatureCount() + getInvalidCount() + getErrorCount();
 		}
 
 		public boolean areAllValid() {
@@ -285,6 +437,13 @@ public class CheckNanopub {
 
 
 		public String getSummary() {
+			int signed = getSignedCount();
+			int legacySigned = getLegacySignedCount();
+			int trusty = getTrustyCount();
+			int notTrusty = getNotTrustyCount();
+			int invalidSignature = getInvalidSignatureCount();
+			int invalid = getInvalidCount();
+			int error = getErrorCount();
 			String s = "";
 			if (signed > 0) s += " " + signed + " trusty with signature;";
 			if (legacySigned > 0) s += " " + legacySigned + " trusty with legacy signature;";
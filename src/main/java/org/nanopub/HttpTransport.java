@@ -0,0 +1,117 @@
+package org.nanopub;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * Provides the HTTP clients for the network access of this library. All clients share a single
+ * pool of connections, so connections (including their TLS sessions) are kept alive and reused
+ * for further requests to the same server. Responses are requested with gzip/deflate encoding and
+ * transparently decompressed.
+ *
+ * There are two clients, which only differ in their timeouts: the default one, and one for
+ * requests to nanopub servers and similar services, where it is better to give up early and try
+ * another server. Callers have to consume or close the response content, so the connection is
+ * given back to the pool.
+ */
+public class HttpTransport {
+
+	private HttpTransport() {}  // no instances allowed
+
+	public static final int defaultMaxConnections = 1000;
+	public static final int defaultMaxConnectionsPerRoute = 20;
+	public static final int defaultConnectTimeout = 10000;
+	public static final int defaultSocketTimeout = 60000;
+	public static final int defaultServerTimeout = 2000;
+	// Time to wait for a free connection of the pool before a request to a server is given up:
+	public static final int defaultServerConnectionRequestTimeout = 100;
+
+	// Connections are kept at most that long, and checked before reuse after that much inactivity:
+	private static final int connectionTimeToLive = 60000;
+	private static final int validateAfterInactivity = 2000;
+
+	private static PoolingHttpClientConnectionManager connManager;
+	private static HttpClient httpClient;
+	private static HttpClient serverHttpClient;
+	private static int maxConnections = defaultMaxConnections;
+	private static int maxConnectionsPerRoute = defaultMaxConnectionsPerRoute;
+	private static int connectTimeout = defaultConnectTimeout;
+	private static int socketTimeout = defaultSocketTimeout;
+	private static int serverTimeout = defaultServerTimeout;
+
+	/**
+	 * Returns the client with the default timeouts.
+	 */
+	public static synchronized HttpClient getHttpClient() {
+		if (httpClient == null) {
+			RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(connectTimeout)
+					.setConnectionRequestTimeout(connectTimeout).setSocketTimeout(socketTimeout)
+					.setCookieSpec(CookieSpecs.STANDARD).build();
+			httpClient = createHttpClient(requestConfig);
+		}
+		return httpClient;
+	}
+
+	/**
+	 * Returns the client with short timeouts, which is meant for requests to nanopub servers.
+	 */
+	public static synchronized HttpClient getServerHttpClient() {
+		if (serverHttpClient == null) {
+			RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(serverTimeout)
+					.setConnectionRequestTimeout(defaultServerConnectionRequestTimeout).setSocketTimeout(serverTimeout)
+					.setCookieSpec(CookieSpecs.STANDARD).build();
+			serverHttpClient = createHttpClient(requestConfig);
+		}
+		return serverHttpClient;
+	}
+
+	private static HttpClient createHttpClient(RequestConfig requestConfig) {
+		return HttpClientBuilder.create().setDefaultRequestConfig(requestConfig)
+				.setConnectionManager(getConnectionManager()).setConnectionManagerShared(true).build();
+	}
+
+	private static PoolingHttpClientConnectionManager getConnectionManager() {
+		if (connManager == null) {
+			connManager = new PoolingHttpClientConnectionManager(connectionTimeToLive, TimeUnit.MILLISECONDS);
+			connManager.setMaxTotal(maxConnections);
+			connManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+			connManager.setValidateAfterInactivity(validateAfterInactivity);
+		}
+		return connManager;
+	}
+
+	public static synchronized void setMaxConnections(int maxConnections) {
+		HttpTransport.maxConnections = maxConnections;
+		if (connManager != null) connManager.setMaxTotal(maxConnections);
+	}
+
+	public static synchronized void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		HttpTransport.maxConnectionsPerRoute = maxConnectionsPerRoute;
+		if (connManager != null) connManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+	}
+
+	/**
+	 * Sets the timeouts in milliseconds of the default client. Clients returned before keep their
+	 * timeouts.
+	 */
+	public static synchronized void setTimeouts(int connectTimeout, int socketTimeout) {
+		HttpTransport.connectTimeout = connectTimeout;
+		HttpTransport.socketTimeout = socketTimeout;
+		httpClient = null;
+	}
+
+	/**
+	 * Sets the connect and socket timeout in milliseconds of the client for nanopub servers.
+	 * Clients returned before keep their timeouts.
+	 */
+	public static synchronized void setServerTimeout(int serverTimeout) {
+		HttpTransport.serverTimeout = serverTimeout;
+		serverHttpClient = null;
+	}
+
+}
@@ -0,0 +1,105 @@
+package org.nanopub;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.impl.AbstractValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+
+/**
+ * Value factory that returns the same object for equal IRIs and short literals, as long as they
+ * are still found in its dictionary. The dictionary has a fixed size and older entries are simply
+ * overwritten. Parsers that use this factory share the objects (and their cached hash codes) for
+ * the predicates, graph URIs, namespaces, and creators that show up in nanopub after nanopub.
+ *
+ * The factory can be used by several parser threads at the same time. The dictionaries are atomic
+ * arrays, so other threads only ever see fully constructed values (the rdf4j value classes don't
+ * have final fields and are therefore not safe to publish otherwise).
+ */
+public class InterningValueFactory extends AbstractValueFactory {
+
+	private static final InterningValueFactory instance = new InterningValueFactory();
+
+	public static InterningValueFactory getInstance() {
+		return instance;
+	}
+
+	// Longer literals are unlikely to be repeated:
+	public static final int maxInternedLiteralLength = 64;
+
+	private static final int iriDictSize = 1 << 16;
+	private static final int literalDictSize = 1 << 14;
+
+	// Concurrent writes to the same slot can make an entry get lost, which is harmless:
+	private final AtomicReferenceArray<IRI> iriDict = new AtomicReferenceArray<>(iriDictSize);
+	private final AtomicReferenceArray<Literal> literalDict = new AtomicReferenceArray<>(literalDictSize);
+
+	protected InterningValueFactory() {
+	}
+
+	@Override
+	public IRI createIRI(String iri) {
+		int slot = iri.hashCode() & (iriDictSize - 1);
+		IRI cached = iriDict.get(slot);
+		if (cached != null && cached.stringValue().equals(iri)) {
+			return cached;
+		}
+		IRI i = super.createIRI(iri);
+		iriDict.set(slot, i);
+		return i;
+	}
+
+	@Override
+	public IRI createIRI(String namespace, String localName) {
+		return createIRI(namespace + localName);
+	}
+
+	@Override
+	public Literal createLiteral(String label) {
+		if (label.length() > maxInternedLiteralLength) {
+			return super.createLiteral(label);
+		}
+		int slot = label.hashCode() & (literalDictSize - 1);
+		Literal cached = literalDict.get(slot);
+		if (cached != null && cached.getLabel().equals(label) && !cached.getLanguage().isPresent() &&
+				cached.getDatatype().equals(XMLSchema.STRING)) {
+			return cached;
+		}
+		Literal l = super.createLiteral(label);
+		literalDict.set(slot, l);
+		return l;
+	}
+
+	@Override
+	public Literal createLiteral(String label, String language) {
+		if (label.length() > maxInternedLiteralLength) {
+			return super.createLiteral(label, language);
+		}
+		int slot = (label.hashCode() * 31 + language.hashCode()) & (literalDictSize - 1);
+		Literal cached = literalDict.get(slot);
+		if (cached != null && cached.getLabel().equals(label) && language.equals(cached.getLanguage().orElse(null))) {
+			return cached;
+		}
+		Literal l = super.createLiteral(label, language);
+		literalDict.set(slot, l);
+		return l;
+	}
+
+	@Override
+	public Literal createLiteral(String label, IRI datatype) {
+		if (label.length() > maxInternedLiteralLength) {
+			return super.createLiteral(label, createIRI(datatype.stringValue()));
+		}
+		int slot = (label.hashCode() * 31 + datatype.hashCode()) & (literalDictSize - 1);
+		Literal cached = literalDict.get(slot);
+		if (cached != null && cached.getLabel().equals(label) && !cached.getLanguage().isPresent() &&
+				cached.getDatatype().equals(datatype)) {
+			return cached;
+		}
+		Literal l = super.createLiteral(label, createIRI(datatype.stringValue()));
+		literalDict.set(slot, l);
+		return l;
+	}
+
+}
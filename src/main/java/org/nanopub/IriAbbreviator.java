@@ -0,0 +1,136 @@
+package org.nanopub;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.rdf4j.rio.turtle.TurtleUtil;
+
+/**
+ * Decides how IRIs are abbreviated with namespace prefixes in TriG output. This is used by
+ * CustomTrigWriter for writing, and by NanopubUtils.getUsedPrefixes to find out which prefixes
+ * would be used without writing anything. All possible namespaces of an IRI are looked up in a
+ * single pass with a prefix trie.
+ */
+class IriAbbreviator {
+
+	// Maps namespaces to prefixes, as in TurtleWriter:
+	private final Map<String,String> namespaceTable;
+	private PrefixTrie namespaceTrie;
+
+	private final int[] splitCandidates = new int[7];
+	private final String[] splitPrefixes = new String[7];
+	private int localNameStart;
+
+	IriAbbreviator() {
+		this(new LinkedHashMap<String,String>());
+	}
+
+	IriAbbreviator(Map<String,String> namespaceTable) {
+		this.namespaceTable = namespaceTable;
+	}
+
+	/**
+	 * Adds a namespace in the same way as TurtleWriter.handleNamespace does: namespaces that are
+	 * already mapped are ignored, and illegal or already used prefixes are replaced by generated
+	 * ones.
+	 */
+	void addNamespace(String prefix, String name) {
+		if (namespaceTable.containsKey(name)) return;
+		boolean isLegalPrefix = prefix.length() == 0 || TurtleUtil.isPN_PREFIX(prefix);
+		if (!isLegalPrefix || namespaceTable.containsValue(prefix)) {
+			if (prefix.length() == 0 || !isLegalPrefix) {
+				prefix = "ns";
+			}
+			int number = 1;
+			while (namespaceTable.containsValue(prefix + number)) {
+				number++;
+			}
+			prefix += number;
+		}
+		namespaceTable.put(name, prefix);
+		namespaceTrie = null;
+	}
+
+	/**
+	 * Needs to be called when the namespace table was changed from outside.
+	 */
+	void namespacesChanged() {
+		namespaceTrie = null;
+	}
+
+	private PrefixTrie getNamespaceTrie() {
+		if (namespaceTrie == null || namespaceTrie.size() != namespaceTable.size()) {
+			namespaceTrie = new PrefixTrie(namespaceTable);
+		}
+		return namespaceTrie;
+	}
+
+	/**
+	 * Returns the prefix for abbreviating the given IRI, or null if it should be written in full.
+	 * The local name starts at getLocalNameStart() afterwards.
+	 */
+	String getPrefix(String uriString) {
+		int length = uriString.length();
+
+		int splitIdx = TurtleUtil.findURISplitIndex(uriString);
+
+		// Sesame bug for URIs that end with a period.
+		// Port fix from https://bitbucket.org/openrdf/sesame/pull-request/301/ses-2086-fix-turtlewriter-writing/diff
+		if (length == 0 || !TurtleUtil.isNameEndChar(uriString.charAt(length - 1))) {
+			splitIdx = -1;
+		}
+
+		// Do also split at dots, colons, and underscores:
+		int splitIdxDot = uriString.lastIndexOf(".") + 1;
+		if (length == splitIdxDot) splitIdxDot = -1;
+		int splitIdxColon = uriString.lastIndexOf(":") + 1;
+		if (length == splitIdxColon) splitIdxColon = -1;
+		int splitIdxUnderscore = uriString.lastIndexOf("_") + 1;
+		if (length == splitIdxUnderscore) splitIdxUnderscore = -1;
+		// ... and *before* hash signs:
+		int splitIdxHashsign = uriString.lastIndexOf("#");
+
+		int[] c = splitCandidates;
+		c[0] = length;
+		c[1] = splitIdx;
+		c[2] = splitIdxDot;
+		c[3] = splitIdxColon;
+		c[4] = splitIdxUnderscore;
+		c[5] = splitIdxHashsign;
+		c[6] = (splitIdxHashsign < 0 ? -1 : splitIdxHashsign + 1);
+		String[] p = splitPrefixes;
+		getNamespaceTrie().getAll(uriString, c, p);
+
+		if (p[0] != null) {
+			// Exact match: no suffix required
+			localNameStart = length;
+			return p[0];
+		}
+
+		String prefix = null;
+		if (splitIdx > 0) {
+			prefix = p[1];
+		}
+		for (int i = 2 ; i <= 4 ; i++) {
+			if (splitIdx > 0 && c[i] > splitIdx && p[i] != null) {
+				splitIdx = c[i];
+				prefix = p[i];
+			}
+		}
+		if (splitIdx > 0 && splitIdxHashsign > splitIdx - 2 && p[5] != null && p[6] == null) {
+			splitIdx = splitIdxHashsign;
+			prefix = p[5];
+		}
+
+		if (uriString.endsWith(".")) {
+			prefix = null;
+		}
+		localNameStart = splitIdx;
+		return prefix;
+	}
+
+	int getLocalNameStart() {
+		return localNameStart;
+	}
+
+}
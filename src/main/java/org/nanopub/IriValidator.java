@@ -0,0 +1,136 @@
+package org.nanopub;
+
+import java.net.URISyntaxException;
+
+/**
+ * Checks whether IRI strings are well-formed, in the same way as java.net.URI does, but without
+ * creating URI objects for the common cases. Strings that are found to be valid are remembered in a
+ * small fixed-size cache that is shared by all nanopubs, as the same graph, predicate, and
+ * namespace IRIs show up again and again in a stream of nanopubs.
+ *
+ * The fast check accepts only a subset of RFC 3986 (absolute IRIs with ASCII characters and
+ * without IP literals), all of which are also accepted by java.net.URI. All other strings are
+ * checked with java.net.URI. For input that is known to be well-formed, the check can be skipped
+ * per parser with NanopubParserSettings.TRUSTED_INPUT.
+ */
+public class IriValidator {
+
+	private IriValidator() {}  // no instances allowed
+
+	private static final int cacheSize = 1 << 14;
+	private static final String[] cache = new String[cacheSize];
+
+	public static boolean isValid(String iri) {
+		int slot = iri.hashCode() & (cacheSize - 1);
+		String cached = cache[slot];
+		if (cached != null && (cached == iri || cached.equals(iri))) return true;
+		boolean valid = isWellFormedAbsoluteIri(iri) || isValidJavaUri(iri);
+		if (valid) {
+			// Races between threads are harmless here; in the worst case, an entry gets lost.
+			cache[slot] = iri;
+		}
+		return valid;
+	}
+
+	private static boolean isValidJavaUri(String iri) {
+		try {
+			new java.net.URI(iri);
+			return true;
+		} catch (URISyntaxException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns true if the given string is definitely well-formed. A return value of false means
+	 * that it is either malformed or outside of the subset covered here.
+	 */
+	static boolean isWellFormedAbsoluteIri(String s) {
+		int n = s.length();
+		if (n == 0 || !isAlpha(s.charAt(0))) return false;
+
+		// Scheme:
+		int i = 1;
+		while (i < n) {
+			char c = s.charAt(i);
+			if (c == ':') break;
+			if (!isAlpha(c) && !isDigit(c) && c != '+' && c != '-' && c != '.') return false;
+			i++;
+		}
+		if (i >= n) return false;
+		i++;
+		if (i >= n || s.charAt(i) == '#') return false;
+
+		// Authority:
+		if (s.startsWith("//", i)) {
+			i += 2;
+			int authorityStart = i;
+			while (i < n) {
+				char c = s.charAt(i);
+				if (c == '/' || c == '?' || c == '#') break;
+				if (c == '%') {
+					if (!isPercentEncoded(s, i)) return false;
+					i += 3;
+					continue;
+				}
+				if (!isUnreserved(c) && !isSubDelim(c) && c != ':' && c != '@') return false;
+				i++;
+			}
+			if (i == authorityStart) return false;
+		}
+
+		// Path and query:
+		i = skipIriChars(s, i);
+		if (i == n) return true;
+		if (i < 0 || s.charAt(i) != '#') return false;
+
+		// Fragment:
+		return skipIriChars(s, i + 1) == n;
+	}
+
+	private static int skipIriChars(String s, int i) {
+		int n = s.length();
+		while (i < n) {
+			char c = s.charAt(i);
+			if (c == '%') {
+				if (!isPercentEncoded(s, i)) return -1;
+				i += 3;
+				continue;
+			}
+			if (!isUnreserved(c) && !isSubDelim(c) && c != ':' && c != '@' && c != '/' && c != '?') break;
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isPercentEncoded(String s, int i) {
+		return i + 2 < s.length() && isHexDigit(s.charAt(i + 1)) && isHexDigit(s.charAt(i + 2));
+	}
+
+	private static boolean isAlpha(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isHexDigit(char c) {
+		return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+	}
+
+	private static boolean isUnreserved(char c) {
+		return isAlpha(c) || isDigit(c) || c == '-' || c == '.' || c == '_' || c == '~';
+	}
+
+	private static boolean isSubDelim(char c) {
+		switch (c) {
+			case '!': case '$': case '&': case '\'': case '(': case ')':
+			case '*': case '+': case ',': case ';': case '=':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+}
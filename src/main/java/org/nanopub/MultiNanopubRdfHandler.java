@@ -17,6 +17,7 @@ import java.util.zip.GZIPInputStream;
 
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.ParserConfig;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.eclipse.rdf4j.rio.RDFParseException;
@@ -36,15 +37,17 @@ public class MultiNanopubRdfHandler extends AbstractRDFHandler {
 		process(format, in, null, npHandler);
 	}
 
+	/**
+	 * Processes the nanopubs with the settings of NanopubParserSettings taken from the given config.
+	 */
+	public static void process(RDFFormat format, InputStream in, NanopubHandler npHandler, ParserConfig config)
+			throws IOException, RDFParseException, RDFHandlerException, MalformedNanopubException {
+		process(format, in, null, npHandler, 1, true, config);
+	}
+
 	public static void process(RDFFormat format, File file, NanopubHandler npHandler)
 			throws IOException, RDFParseException, RDFHandlerException, MalformedNanopubException {
-		InputStream in;
-		if (file.getName().matches(".*\\.(gz|gzip)")) {
-			in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file)));
-		} else {
-			in = new BufferedInputStream(new FileInputStream(file));
-		}
-		process(format, in, file, npHandler);
+		process(format, getInputStream(file), file, npHandler);
 	}
 
 	public static void process(File file, NanopubHandler npHandler)
@@ -53,12 +56,73 @@ public class MultiNanopubRdfHandler extends AbstractRDFHandler {
 		process(format, file, npHandler);
 	}
 
+	/**
+	 * Processes the nanopubs with the given number of worker threads. The parsing happens in the
+	 * calling thread, whereas the nanopub objects are created, validated, and passed on to the handler
+	 * in the worker threads. If the order is kept, the handler is called by one thread at a time, so
+	 * the work for each nanopub should be done in the prepare step of a TwoStepNanopubHandler to run
+	 * in parallel. If the order is not to be kept, the handler is called concurrently and needs to be
+	 * thread-safe (which TwoStepNanopubHandler takes care of for its second step).
+	 */
+	public static void process(RDFFormat format, InputStream in, NanopubHandler npHandler, int threadCount, boolean keepOrder)
+			throws IOException, RDFParseException, RDFHandlerException, MalformedNanopubException {
+		process(format, in, null, npHandler, threadCount, keepOrder, null);
+	}
+
+	/**
+	 * Like the variant for input streams, but unordered processing of uncompressed N-Quads files
+	 * also parses the file in chunks on several threads (see NquadsChunkProcessor).
+	 */
+	public static void process(RDFFormat format, File file, NanopubHandler npHandler, int threadCount, boolean keepOrder)
+			throws IOException, RDFParseException, RDFHandlerException, MalformedNanopubException {
+		process(format, file, npHandler, threadCount, keepOrder, null);
+	}
+
+	/**
+	 * Like the variant above, with the settings of NanopubParserSettings taken from the given
+	 * config, which can be null.
+	 */
+	public static void process(RDFFormat format, File file, NanopubHandler npHandler, int threadCount, boolean keepOrder,
+			ParserConfig config) throws IOException, RDFParseException, RDFHandlerException, MalformedNanopubException {
+		if (threadCount > 1 && !keepOrder && NquadsChunkProcessor.isApplicable(format, file)) {
+			NquadsChunkProcessor.process(file, npHandler, threadCount, config);
+			return;
+		}
+		process(format, getInputStream(file), file, npHandler, threadCount, keepOrder, config);
+	}
+
+	public static void process(File file, NanopubHandler npHandler, int threadCount, boolean keepOrder)
+			throws IOException, RDFParseException, RDFHandlerException, MalformedNanopubException {
+		RDFFormat format = Rio.getParserFormatForFileName(file.getName()).orElse(RDFFormat.TRIG);
+		process(format, file, npHandler, threadCount, keepOrder);
+	}
+
 	private static void process(RDFFormat format, InputStream in, File file, NanopubHandler npHandler)
 			throws IOException, RDFParseException, RDFHandlerException, MalformedNanopubException {
-		RDFParser p = NanopubUtils.getParser(format);
-		p.setRDFHandler(new MultiNanopubRdfHandler(npHandler));
+		process(format, in, file, npHandler, 1, true, null);
+	}
+
+	private static void process(RDFFormat format, InputStream in, File file, NanopubHandler npHandler, int threadCount,
+			boolean keepOrder, ParserConfig config)
+			throws IOException, RDFParseException, RDFHandlerException, MalformedNanopubException {
+		RDFParser p = NanopubUtils.getParser(format, config);
+		boolean trustedInput = (config != null && config.get(NanopubParserSettings.TRUSTED_INPUT));
+		ParallelNanopubDispatcher dispatcher = null;
+		MultiNanopubRdfHandler handler;
+		if (threadCount > 1) {
+			dispatcher = new ParallelNanopubDispatcher(npHandler, threadCount, keepOrder);
+			dispatcher.setTrustedInput(trustedInput);
+			handler = new MultiNanopubRdfHandler(dispatcher);
+		} else {
+			handler = new MultiNanopubRdfHandler(npHandler);
+			handler.setTrustedInput(trustedInput);
+		}
+		p.setRDFHandler(handler);
 		try {
 			p.parse(new InputStreamReader(in, Charset.forName("UTF-8")), "");
+			if (dispatcher != null) {
+				dispatcher.finish();
+			}
 		} catch (RuntimeException ex) {
 			if ("wrapped MalformedNanopubException".equals(ex.getMessage()) &&
 					ex.getCause() instanceof MalformedNanopubException) {
@@ -67,11 +131,24 @@ public class MultiNanopubRdfHandler extends AbstractRDFHandler {
 				throw ex;
 			}
 		} finally {
+			if (dispatcher != null) {
+				dispatcher.shutdown();
+			}
 			in.close();
 		}
 	}
 
+	static InputStream getInputStream(File file) throws IOException {
+		if (file.getName().matches(".*\\.(gz|gzip)")) {
+			return new GZIPInputStream(new BufferedInputStream(new FileInputStream(file)));
+		} else {
+			return new BufferedInputStream(new FileInputStream(file));
+		}
+	}
+
 	private NanopubHandler npHandler;
+	private ParallelNanopubDispatcher dispatcher;
+	private boolean trustedInput = false;
 
 	private Map<IRI,Boolean> graphs = new HashMap<>();
 	private Map<IRI,Map<IRI,Boolean>> members = new HashMap<>();
@@ -86,6 +163,18 @@ public class MultiNanopubRdfHandler extends AbstractRDFHandler {
 		this.npHandler = npHandler;
 	}
 
+	public MultiNanopubRdfHandler(ParallelNanopubDispatcher dispatcher) {
+		this.dispatcher = dispatcher;
+	}
+
+	/**
+	 * If set to true, the IRIs of the nanopubs are not checked (see
+	 * NanopubParserSettings.TRUSTED_INPUT). With a dispatcher, this is set on the dispatcher instead.
+	 */
+	public void setTrustedInput(boolean trustedInput) {
+		this.trustedInput = trustedInput;
+	}
+
 	@Override
 	public void handleStatement(Statement st) throws RDFHandlerException {
 		if (!graphs.containsKey(st.getContext())) {
@@ -124,8 +213,12 @@ public class MultiNanopubRdfHandler extends AbstractRDFHandler {
 	}
 
 	private void finishAndReset() {
+		if (dispatcher != null) {
+			dispatchAndReset();
+			return;
+		}
 		try {
-			npHandler.handleNanopub(new NanopubImpl(statements, nsPrefixes, ns));
+			npHandler.handleNanopub(new NanopubImpl(statements, nsPrefixes, ns, trustedInput));
 		} catch (MalformedNanopubException ex) {
 			if (ex.getMessage().equals("No content received for nanopub")) { // TODO: Improve this check!
 				// ignore (a stream of zero nanopubs is also a valid nanopub stream)
@@ -136,6 +229,17 @@ public class MultiNanopubRdfHandler extends AbstractRDFHandler {
 		clearAll();
 	}
 
+	private void dispatchAndReset() {
+		if (!statements.isEmpty()) {
+			try {
+				dispatcher.submit(new ArrayList<>(statements), new ArrayList<>(nsPrefixes), new HashMap<>(ns));
+			} catch (MalformedNanopubException ex) {
+				throwMalformed(ex);
+			}
+		}
+		clearAll();
+	}
+
 	private void clearAll() {
 		graphs.clear();
 		members.clear();
@@ -153,4 +257,34 @@ public class MultiNanopubRdfHandler extends AbstractRDFHandler {
 
 	}
 
+
+	/**
+	 * Handler whose work is split into two steps, so most of it can run in parallel when several
+	 * threads are used: prepare is called concurrently from the worker threads, and handlePrepared
+	 * is called one at a time with its result (in input order, if the order is kept).
+	 */
+	public static abstract class TwoStepNanopubHandler<T> implements NanopubHandler {
+
+		/**
+		 * Does the work for the given nanopub that can be done in parallel. This can be called
+		 * from several threads at the same time.
+		 */
+		public abstract T prepare(Nanopub np);
+
+		/**
+		 * Handles the nanopub with the result of prepare, such as by writing it. This is never
+		 * called from several threads at the same time.
+		 */
+		public abstract void handlePrepared(Nanopub np, T prepared);
+
+		@Override
+		public final void handleNanopub(Nanopub np) {
+			T prepared = prepare(np);
+			synchronized (this) {
+				handlePrepared(np, prepared);
+			}
+		}
+
+	}
+
 }
@@ -8,17 +8,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
-import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 
@@ -27,10 +31,8 @@ import javax.activation.MimetypesFileTypeMap;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.config.CookieSpecs;
-import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
 import org.eclipse.rdf4j.RDF4JException;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
@@ -47,6 +49,7 @@ import org.eclipse.rdf4j.query.TupleQueryResult;
 import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.rio.ParserConfig;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.eclipse.rdf4j.rio.RDFParser;
@@ -107,12 +110,20 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 	private IRI nanopubUri;
 	private IRI headUri, assertionUri, provenanceUri, pubinfoUri;
 	private Set<IRI> graphUris;
-	private Set<Statement> head, assertion, provenance, pubinfo;
 
+	// All statements are stored once, sorted by graph (head, assertion, provenance, pubinfo) and
+	// within each graph by StatementComparator (so the input order is not kept):
+	private Statement[] graphStatements;
+	private int[] graphOffsets;
+	private transient Set<Statement> head, assertion, provenance, pubinfo;
+	private transient List<Statement> sortedStatements;
+
+	// Only used while reading; set to null once the nanopub is initialized:
 	private List<Statement> statements = new ArrayList<>();
 	private List<String> nsPrefixes = new ArrayList<>();
 	private Map<String,String> ns = new HashMap<>();
 	private boolean unusedPrefixesRemoved = false;
+	private transient boolean trustedInput = false;
 
 	private int tripleCount;
 	private long byteCount;
@@ -124,6 +135,18 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 		init();
 	}
 
+	/**
+	 * Creates a nanopub without checking its IRIs if trustedInput is true (see
+	 * NanopubParserSettings.TRUSTED_INPUT).
+	 */
+	NanopubImpl(Collection<Statement> statements, List<String> nsPrefixes, Map<String,String> ns, boolean trustedInput) throws MalformedNanopubException {
+		this.statements.addAll(statements);
+		this.nsPrefixes.addAll(nsPrefixes);
+		this.ns.putAll(ns);
+		this.trustedInput = trustedInput;
+		init();
+	}
+
 	public NanopubImpl(Collection<Statement> statements, List<Pair<String,String>> namespaces) throws MalformedNanopubException {
 		this.statements.addAll(statements);
 		for (Pair<String,String> p : namespaces) {
@@ -239,13 +262,14 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 	private HttpResponse getNanopub(URL url) throws IOException {
 		HttpGet get = new HttpGet(url.toString());
 		get.setHeader("Accept", "application/trig; q=1, application/x-trig; q=1, text/x-nquads; q=0.1, application/trix; q=0.1");
-		RequestConfig requestConfig = RequestConfig.custom().setCookieSpec(CookieSpecs.STANDARD).build();
-		HttpResponse response = HttpClientBuilder.create().setDefaultRequestConfig(requestConfig).build().execute(get);
+		HttpResponse response = HttpTransport.getHttpClient().execute(get);
 		int statusCode = response.getStatusLine().getStatusCode();
 		if (statusCode == 404 || statusCode == 410) {
+			EntityUtils.consumeQuietly(response.getEntity());
 			throw new FileNotFoundException(response.getStatusLine().getReasonPhrase());
 		}
 		if (statusCode < 200 || statusCode > 299) {
+			EntityUtils.consumeQuietly(response.getEntity());
 			throw new IOException("HTTP error " + statusCode + ": " + response.getStatusLine().getReasonPhrase());
 		}
 		return response;
@@ -261,6 +285,16 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 		this(in, format, "");
 	}
 
+	/**
+	 * Reads the nanopub with the settings of NanopubParserSettings taken from the given config.
+	 */
+	public NanopubImpl(InputStream in, RDFFormat format, ParserConfig config)
+			throws MalformedNanopubException, RDF4JException, IOException {
+		trustedInput = config.get(NanopubParserSettings.TRUSTED_INPUT);
+		readStatements(in, format, "", config);
+		init();
+	}
+
 	public NanopubImpl(String utf8, RDFFormat format, String baseUri) throws MalformedNanopubException, RDF4JException {
 		try {
 			readStatements(new ByteArrayInputStream(utf8.getBytes("UTF-8")), format, baseUri);
@@ -278,8 +312,13 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 	// TODO Is the baseURI really needed? Shouldn't the input stream contain all needed data?
 	private void readStatements(InputStream in, RDFFormat format, String baseUri)
 			throws MalformedNanopubException, RDF4JException, IOException {
+		readStatements(in, format, baseUri, null);
+	}
+
+	private void readStatements(InputStream in, RDFFormat format, String baseUri, ParserConfig config)
+			throws MalformedNanopubException, RDF4JException, IOException {
 		try {
-			RDFParser p = NanopubUtils.getParser(format);
+			RDFParser p = NanopubUtils.getParser(format, config);
 			p.setRDFHandler(new AbstractRDFHandler() {
 	
 				@Override
@@ -310,6 +349,7 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 		}
 		collectGraphs(statements);
 		collectStatements(statements);
+		statements = null;
 		checkAssertion();
 		checkProvenance();
 		checkPubinfo();
@@ -386,24 +426,36 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 	private void collectStatements(Collection<Statement> statements) throws MalformedNanopubException {
 		tripleCount = 0;
 		byteCount = 0;
-		Set<Statement> head = new LinkedHashSet<>();
-		Set<Statement> assertion = new LinkedHashSet<>();
-		Set<Statement> provenance = new LinkedHashSet<>();
-		Set<Statement> pubinfo = new LinkedHashSet<>();
+		// Duplicates are only removed within the same graph:
+		List<Set<Statement>> seen = new ArrayList<>(4);
+		for (int i = 0 ; i < 4 ; i++) {
+			seen.add(new HashSet<Statement>());
+		}
+		int[] counts = new int[4];
+		byte[] graphIndexes = new byte[statements.size()];
+		int n = 0;
 		for (Statement st : statements) {
-			checkStatement(st);
+			if (!trustedInput) checkStatement(st);
 			Resource g = st.getContext();
+			int i;
 			if (g.equals(headUri)) {
-				head.add(st);
+				i = HEAD;
 			} else if (g.equals(assertionUri)) {
-				assertion.add(st);
+				i = ASSERTION;
 			} else if (g.equals(provenanceUri)) {
-				provenance.add(st);
+				i = PROVENANCE;
 			} else if (g.equals(pubinfoUri)) {
-				pubinfo.add(st);
+				i = PUBINFO;
 			} else {
 				throw new MalformedNanopubException("Disconnected graph: " + g);
 			}
+			if (seen.get(i).add(st)) {
+				graphIndexes[n] = (byte) i;
+				counts[i]++;
+			} else {
+				graphIndexes[n] = -1;
+			}
+			n++;
 			tripleCount++;
 			byteCount += st.getContext().stringValue().length();
 			byteCount += st.getSubject().stringValue().length();
@@ -412,42 +464,72 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 			if (tripleCount < 0) tripleCount = Integer.MAX_VALUE;
 			if (byteCount < 0) byteCount = Long.MAX_VALUE;
 		}
-		this.head = ImmutableSet.copyOf(head);
-		this.assertion = ImmutableSet.copyOf(assertion);
-		this.provenance = ImmutableSet.copyOf(provenance);
-		this.pubinfo = ImmutableSet.copyOf(pubinfo);
+		graphOffsets = new int[5];
+		for (int i = 0 ; i < 4 ; i++) {
+			graphOffsets[i + 1] = graphOffsets[i] + counts[i];
+		}
+		graphStatements = new Statement[graphOffsets[4]];
+		int[] pos = new int[4];
+		System.arraycopy(graphOffsets, 0, pos, 0, 4);
+		n = 0;
+		for (Statement st : statements) {
+			int i = graphIndexes[n++];
+			if (i >= 0) {
+				graphStatements[pos[i]++] = st;
+			}
+		}
+		for (int i = 0 ; i < 4 ; i++) {
+			Arrays.sort(graphStatements, graphOffsets[i], graphOffsets[i + 1], StatementComparator.getInstance());
+		}
+	}
+
+	private static final int HEAD = 0;
+	private static final int ASSERTION = 1;
+	private static final int PROVENANCE = 2;
+	private static final int PUBINFO = 3;
+
+	/**
+	 * The statements are kept sorted by graph and StatementComparator, so this list is just an
+	 * unmodifiable view on them.
+	 */
+	List<Statement> getSortedStatements() {
+		if (sortedStatements == null) {
+			sortedStatements = Collections.unmodifiableList(Arrays.asList(graphStatements));
+		}
+		return sortedStatements;
+	}
+
+	private Set<Statement> getGraph(int i) {
+		return new GraphStatementSet(graphStatements, graphOffsets[i], graphOffsets[i + 1]);
 	}
 
 	private void checkStatement(Statement st) throws MalformedNanopubException {
-		String uriString = null;
-		try {
-			// Throw exceptions if not well-formed:
-			uriString = st.getContext().stringValue();
-			new java.net.URI(uriString);
-			uriString = st.getSubject().stringValue();
-			new java.net.URI(uriString);
-			uriString = st.getPredicate().stringValue();
-			new java.net.URI(uriString);
-			if (st.getObject() instanceof IRI) {
-				uriString = st.getObject().stringValue();
-				new java.net.URI(uriString);
-			}
-		} catch (URISyntaxException ex) {
+		// Throw exceptions if not well-formed:
+		checkUri(st.getContext().stringValue());
+		checkUri(st.getSubject().stringValue());
+		checkUri(st.getPredicate().stringValue());
+		if (st.getObject() instanceof IRI) {
+			checkUri(st.getObject().stringValue());
+		}
+	}
+
+	private static void checkUri(String uriString) throws MalformedNanopubException {
+		if (!IriValidator.isValid(uriString)) {
 			throw new MalformedNanopubException("Malformed URI: " + uriString);
 		}
 	}
 
 	private void checkAssertion() throws MalformedNanopubException {
-		if (assertion.isEmpty()) {
+		if (getAssertion().isEmpty()) {
 			throw new MalformedNanopubException("Empty assertion graph: " + assertionUri);
 		}
 	}
 
 	private void checkProvenance() throws MalformedNanopubException {
-		if (provenance.isEmpty()) {
+		if (getProvenance().isEmpty()) {
 			throw new MalformedNanopubException("Empty provenance graph: " + provenanceUri);
 		}
-		for (Statement st : provenance) {
+		for (Statement st : getProvenance()) {
 			if (assertionUri.equals(st.getSubject())) return;
 			if (assertionUri.equals(st.getObject())) return;
 		}
@@ -455,10 +537,10 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 	}
 
 	private void checkPubinfo() throws MalformedNanopubException {
-		if (pubinfo.isEmpty()) {
+		if (getPubinfo().isEmpty()) {
 			throw new MalformedNanopubException("Empty publication info graph: " + pubinfoUri);
 		}
-		for (Statement st : pubinfo) {
+		for (Statement st : getPubinfo()) {
 			if (nanopubUri.equals(st.getSubject())) return;
 			if (nanopubUri.equals(st.getObject())) return;
 		}
@@ -477,6 +559,7 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 
 	@Override
 	public Set<Statement> getHead() {
+		if (head == null) head = getGraph(HEAD);
 		return head;
 	}
 
@@ -487,6 +570,7 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 
 	@Override
 	public Set<Statement> getAssertion() {
+		if (assertion == null) assertion = getGraph(ASSERTION);
 		return assertion;
 	}
 
@@ -497,6 +581,7 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 
 	@Override
 	public Set<Statement> getProvenance() {
+		if (provenance == null) provenance = getGraph(PROVENANCE);
 		return provenance;
 	}
 
@@ -507,6 +592,7 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 
 	@Override
 	public Set<Statement> getPubinfo() {
+		if (pubinfo == null) pubinfo = getGraph(PUBINFO);
 		return pubinfo;
 	}
 
@@ -563,4 +649,74 @@ public class NanopubImpl implements NanopubWithNs, Serializable {
 		return byteCount;
 	}
 
+
+
+	/**
+	 * Unmodifiable set view on a range of the statement array. As the range is sorted by
+	 * StatementComparator, lookups are done by binary search.
+	 */
+	private static class GraphStatementSet extends AbstractSet<Statement> {
+
+		private final Statement[] array;
+		private final int from, to;
+
+		GraphStatementSet(Statement[] array, int from, int to) {
+			this.array = array;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Iterator<Statement> iterator() {
+			return new Iterator<Statement>() {
+
+				private int i = from;
+
+				@Override
+				public boolean hasNext() {
+					return i < to;
+				}
+
+				@Override
+				public Statement next() {
+					if (i >= to) throw new NoSuchElementException();
+					return array[i++];
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+
+			};
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Statement)) return false;
+			// Statement.equals ignores the context, and within one graph's range all statements
+			// have the same context anyway, so the lookup compares subject, predicate and object only:
+			return Arrays.binarySearch(array, from, to, (Statement) o, tripleComparator) >= 0;
+		}
+
+		private static final Comparator<Statement> tripleComparator = new Comparator<Statement>() {
+
+			@Override
+			public int compare(Statement st1, Statement st2) {
+				int c = StatementComparator.compareValues(st1.getSubject(), st2.getSubject());
+				if (c != 0) return c;
+				c = StatementComparator.compareValues(st1.getPredicate(), st2.getPredicate());
+				if (c != 0) return c;
+				return StatementComparator.compareValues(st1.getObject(), st2.getObject());
+			}
+
+		};
+
+	}
+
 }
@@ -0,0 +1,29 @@
+package org.nanopub;
+
+import org.eclipse.rdf4j.rio.RioSetting;
+import org.eclipse.rdf4j.rio.helpers.RioSettingImpl;
+
+/**
+ * Settings for reading nanopubs, which are given per parser in a ParserConfig (see
+ * NanopubUtils.getParser, MultiNanopubRdfHandler, and NanopubImpl).
+ */
+public class NanopubParserSettings {
+
+	private NanopubParserSettings() {}  // no instances allowed
+
+	/**
+	 * If true, the IRIs of the read nanopubs are not checked to be well-formed. This should only be
+	 * used for input that is known to be well-formed, such as the output of an earlier check.
+	 */
+	public static final RioSetting<Boolean> TRUSTED_INPUT = new RioSettingImpl<Boolean>(
+			"org.nanopub.trusted_input", "Skip IRI checks for trusted input", Boolean.FALSE);
+
+	/**
+	 * If true, IRIs and short literals are created with InterningValueFactory, so equal terms
+	 * across nanopubs share the same objects. This reduces memory usage when many nanopubs are kept
+	 * or processed in a long stream.
+	 */
+	public static final RioSetting<Boolean> INTERN_VALUES = new RioSettingImpl<Boolean>(
+			"org.nanopub.intern_values", "Share equal values across nanopubs", Boolean.FALSE);
+
+}
@@ -0,0 +1,224 @@
+package org.nanopub;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.eclipse.rdf4j.RDF4JException;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+
+/**
+ * Reads the nanopubs of a file or stream one by one (pull-based), as opposed to the callback
+ * mechanism of MultiNanopubRdfHandler. The parser runs on a separate thread and hands over the
+ * nanopubs via a bounded buffer, so it never gets far ahead of the consumer. Readers should be
+ * closed after use, which stops the parser thread if the input has not been fully consumed.
+ */
+public class NanopubReader implements Iterable<Nanopub>, Closeable {
+
+	public static final int defaultBufferSize = 100;
+
+	private static final Object END = new Object();
+
+	private final BlockingQueue<Object> buffer;
+	private final InputStream in;
+	private final Thread parserThread;
+	private volatile boolean closed = false;
+	private Object next;
+	private boolean finished = false;
+
+	public NanopubReader(File file) throws IOException {
+		this(Rio.getParserFormatForFileName(file.getName()).orElse(RDFFormat.TRIG), file);
+	}
+
+	public NanopubReader(RDFFormat format, File file) throws IOException {
+		this(format, MultiNanopubRdfHandler.getInputStream(file), defaultBufferSize);
+	}
+
+	public NanopubReader(RDFFormat format, InputStream in) {
+		this(format, in, defaultBufferSize);
+	}
+
+	public NanopubReader(final RDFFormat format, InputStream in, int bufferSize) {
+		this.in = in;
+		buffer = new ArrayBlockingQueue<>(bufferSize);
+		parserThread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				parse(format);
+			}
+
+		}, "nanopub-reader");
+		parserThread.setDaemon(true);
+		parserThread.start();
+	}
+
+	private void parse(RDFFormat format) {
+		Object last = END;
+		try {
+			MultiNanopubRdfHandler.process(format, in, new NanopubHandler() {
+
+				@Override
+				public void handleNanopub(Nanopub np) {
+					if (!put(np)) {
+						throw new ReaderClosedException();
+					}
+				}
+
+			});
+		} catch (ReaderClosedException ex) {
+			return;
+		} catch (IOException | MalformedNanopubException | RuntimeException ex) {
+			if (closed) return;
+			last = ex;
+		}
+		put(last);
+	}
+
+	private boolean put(Object o) {
+		try {
+			while (!closed) {
+				if (buffer.offer(o, 100, TimeUnit.MILLISECONDS)) return true;
+			}
+		} catch (InterruptedException ex) {
+			// reader got closed
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the next nanopub, or null if the end of the input is reached. Parsing errors and
+	 * malformed nanopubs are thrown here with their original exception type.
+	 */
+	public Nanopub read() throws IOException, RDF4JException, MalformedNanopubException {
+		Object o = take();
+		if (o == END) return null;
+		next = null;
+		return (Nanopub) o;
+	}
+
+	private Object take() throws IOException, RDF4JException, MalformedNanopubException {
+		if (next == null) {
+			if (finished || closed) return END;
+			try {
+				next = buffer.take();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for nanopub", ex);
+			}
+		}
+		if (next instanceof Exception) {
+			Exception ex = (Exception) next;
+			next = END;
+			finished = true;
+			if (ex instanceof IOException) throw (IOException) ex;
+			if (ex instanceof MalformedNanopubException) throw (MalformedNanopubException) ex;
+			throw (RuntimeException) ex;
+		}
+		if (next == END) {
+			finished = true;
+		}
+		return next;
+	}
+
+	/**
+	 * Returns an iterator over the remaining nanopubs. Checked exceptions that happen while reading
+	 * are wrapped in a NanopubReaderException.
+	 */
+	@Override
+	public Iterator<Nanopub> iterator() {
+		return new Iterator<Nanopub>() {
+
+			@Override
+			public boolean hasNext() {
+				try {
+					return take() != END;
+				} catch (IOException | MalformedNanopubException ex) {
+					throw new NanopubReaderException(ex);
+				}
+			}
+
+			@Override
+			public Nanopub next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				Nanopub np = (Nanopub) next;
+				next = null;
+				return np;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+		};
+	}
+
+	/**
+	 * Returns a sequential stream over the remaining nanopubs. Closing the stream closes this reader.
+	 */
+	public Stream<Nanopub> stream() {
+		Spliterator<Nanopub> spliterator = Spliterators.spliteratorUnknownSize(iterator(),
+				Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+
+			@Override
+			public void run() {
+				close();
+			}
+
+		});
+	}
+
+	// for testing
+	Thread getParserThread() {
+		return parserThread;
+	}
+
+	@Override
+	public void close() {
+		if (closed) return;
+		closed = true;
+		parserThread.interrupt();
+		buffer.clear();
+		try {
+			in.close();
+		} catch (IOException ex) {
+			// ignore
+		}
+	}
+
+
+	/**
+	 * Unchecked wrapper for the checked exceptions that happen while iterating over nanopubs.
+	 */
+	public static class NanopubReaderException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public NanopubReaderException(Exception cause) {
+			super(cause.getMessage(), cause);
+		}
+
+	}
+
+
+	private static class ReaderClosedException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+}
@@ -8,16 +8,22 @@ import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Namespace;
 import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.util.Literals;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.ParserConfig;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.eclipse.rdf4j.rio.RDFParser;
 import org.eclipse.rdf4j.rio.RDFWriter;
@@ -51,7 +57,30 @@ public class NanopubUtils {
 		return defaultNamespaces;
 	}
 
+	/**
+	 * Returns the statements of the given nanopub, sorted by graph (head, assertion, provenance,
+	 * publication info) and then with StatementComparator. The returned list is a new list that
+	 * can be modified by the caller.
+	 */
 	public static List<Statement> getStatements(Nanopub nanopub) {
+		if (nanopub instanceof NanopubImpl) {
+			return new ArrayList<>(((NanopubImpl) nanopub).getSortedStatements());
+		}
+		return getSortedStatements(nanopub);
+	}
+
+	/**
+	 * Returns the statements in the same order as getStatements, but as an unmodifiable list. For
+	 * NanopubImpl objects, this is a view on their internal statement array, so nothing is copied.
+	 */
+	public static List<Statement> getUnmodifiableStatements(Nanopub nanopub) {
+		if (nanopub instanceof NanopubImpl) {
+			return ((NanopubImpl) nanopub).getSortedStatements();
+		}
+		return Collections.unmodifiableList(getSortedStatements(nanopub));
+	}
+
+	private static List<Statement> getSortedStatements(Nanopub nanopub) {
 		List<Statement> s = new ArrayList<>();
 		s.addAll(getSortedList(nanopub.getHead()));
 		s.addAll(getSortedList(nanopub.getAssertion()));
@@ -62,18 +91,13 @@ public class NanopubUtils {
 
 	private static List<Statement> getSortedList(Set<Statement> s) {
 		List<Statement> l = new ArrayList<Statement>(s);
-		Collections.sort(l, new Comparator<Statement>() {
-
-			@Override
-			public int compare(Statement st1, Statement st2) {
-				// TODO better sorting
-				return st1.toString().compareTo(st2.toString());
-			}
-
-		});
+		Collections.sort(l, StatementComparator.getInstance());
 		return l;
 	}
 
+	/**
+	 * Writes a single nanopub and flushes the stream. Use NanopubWriter to write many nanopubs.
+	 */
 	public static void writeToStream(Nanopub nanopub, OutputStream out, RDFFormat format)
 			throws RDFHandlerException {
 		writeNanopub(nanopub, format, new OutputStreamWriter(out, Charset.forName("UTF-8")));
@@ -115,28 +139,72 @@ public class NanopubUtils {
 				handler.handleNamespace(p.getLeft(), p.getRight());
 			}
 		}
-		for (Statement st : getStatements(nanopub)) {
+		for (Statement st : getUnmodifiableStatements(nanopub)) {
 			handler.handleStatement(st);
 		}
 		handler.endRDF();
 	}
 
 	public static RDFParser getParser(RDFFormat format) {
+		return getParser(format, null);
+	}
+
+	/**
+	 * Returns a parser that applies NanopubParserSettings.INTERN_VALUES from the given config,
+	 * which can be null.
+	 */
+	public static RDFParser getParser(RDFFormat format, ParserConfig config) {
 		RDFParser p = Rio.createParser(format);
 		p.getParserConfig().set(BasicParserSettings.NAMESPACES, new HashSet<Namespace>());
+		if (config != null && config.get(NanopubParserSettings.INTERN_VALUES)) {
+			p.setValueFactory(InterningValueFactory.getInstance());
+		}
 		return p;
 	}
 
+	/**
+	 * Returns the prefixes that are used when the given nanopub is written in TriG. This follows the
+	 * rules of CustomTrigWriter, but only looks at the IRIs without writing anything.
+	 */
 	public static Set<String> getUsedPrefixes(NanopubWithNs np) {
 		Set<String> usedPrefixes = new HashSet<String>();
-		CustomTrigWriter writer = new CustomTrigWriter(usedPrefixes);
-		try {
-			NanopubUtils.propagateToHandler(np, writer);
-		} catch (RDFHandlerException ex) {
-			ex.printStackTrace();
-			return usedPrefixes;
+		IriAbbreviator abbreviator = new IriAbbreviator();
+		if (!np.getNsPrefixes().isEmpty()) {
+			for (String p : np.getNsPrefixes()) {
+				abbreviator.addNamespace(p, np.getNamespace(p));
+			}
+		} else {
+			abbreviator.addNamespace("this", np.getUri().toString());
+			for (Pair<String,String> p : defaultNamespaces) {
+				abbreviator.addNamespace(p.getLeft(), p.getRight());
+			}
+		}
+		for (Statement st : getUnmodifiableStatements(np)) {
+			addUsedPrefix(st.getContext(), abbreviator, usedPrefixes);
+			addUsedPrefix(st.getSubject(), abbreviator, usedPrefixes);
+			// rdf:type is written as "a":
+			if (!RDF.TYPE.equals(st.getPredicate())) {
+				addUsedPrefix(st.getPredicate(), abbreviator, usedPrefixes);
+			}
+			Value obj = st.getObject();
+			if (obj instanceof Literal) {
+				Literal l = (Literal) obj;
+				if (!Literals.isLanguageLiteral(l) && !XMLSchema.STRING.equals(l.getDatatype())) {
+					addUsedPrefix(l.getDatatype(), abbreviator, usedPrefixes);
+				}
+			} else {
+				addUsedPrefix(obj, abbreviator, usedPrefixes);
+			}
 		}
 		return usedPrefixes;
 	}
 
+	private static void addUsedPrefix(Value v, IriAbbreviator abbreviator, Set<String> usedPrefixes) {
+		if (!(v instanceof IRI)) return;
+		String prefix = abbreviator.getPrefix(v.stringValue());
+		if (prefix != null) {
+			usedPrefixes.add(prefix);
+		}
+	}
+
 }
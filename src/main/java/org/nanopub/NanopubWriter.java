@@ -0,0 +1,123 @@
+package org.nanopub;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFWriter;
+import org.eclipse.rdf4j.rio.Rio;
+import org.nanopub.trusty.TrustyNanopubUtils;
+
+/**
+ * Writes a sequence of nanopubs to one output stream. Unlike repeated calls of
+ * NanopubUtils.writeToStream, this uses a single large buffer that is only flushed when it is full
+ * or when flush or close is called. For formats without namespaces (such as N-Quads and TriX), a
+ * single RDF writer is used for the whole session, so TriX output is one document. For the other
+ * formats, each nanopub still gets its own namespace declarations (the "this" prefix differs from
+ * nanopub to nanopub), but the RDF writers write to the shared buffer and do not flush the stream.
+ * The session is ended by close, or by finish for streams that have to stay open.
+ *
+ * The write methods are synchronized, so a writer can be used by several threads.
+ */
+public class NanopubWriter implements Closeable {
+
+	public static final int defaultBufferSize = 1024 * 1024;
+
+	private final RDFFormat format;
+	private final Writer writer;
+	private final Writer rdfWriterTarget;
+	private RDFWriter sessionWriter;
+	private int count = 0;
+
+	public NanopubWriter(OutputStream out, RDFFormat format) {
+		this(out, format, defaultBufferSize);
+	}
+
+	public NanopubWriter(OutputStream out, RDFFormat format, int bufferSize) {
+		this.format = format;
+		writer = new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")), bufferSize);
+		rdfWriterTarget = new FilterWriter(writer) {
+
+			@Override
+			public void flush() {
+				// Only flushed by the session
+			}
+
+			@Override
+			public void close() {
+				// Only closed by the session
+			}
+
+		};
+	}
+
+	public synchronized void write(Nanopub nanopub) throws RDFHandlerException {
+		try {
+			if (format.equals(TrustyNanopubUtils.STNP_FORMAT)) {
+				writer.write(TrustyNanopubUtils.getTrustyDigestString(nanopub));
+			} else if (!format.supportsNamespaces()) {
+				if (sessionWriter == null) {
+					sessionWriter = Rio.createWriter(format, rdfWriterTarget);
+					sessionWriter.startRDF();
+				}
+				for (Statement st : NanopubUtils.getUnmodifiableStatements(nanopub)) {
+					sessionWriter.handleStatement(st);
+				}
+			} else {
+				NanopubUtils.propagateToHandler(nanopub, Rio.createWriter(format, rdfWriterTarget));
+			}
+		} catch (IOException ex) {
+			throw new RDFHandlerException(ex);
+		}
+		count++;
+	}
+
+	/**
+	 * Writes the given text as it is, for nanopubs that are already serialized.
+	 */
+	public synchronized void writeText(String text) throws IOException {
+		writer.write(text);
+	}
+
+	public synchronized int getNanopubCount() {
+		return count;
+	}
+
+	public synchronized void flush() throws IOException {
+		writer.flush();
+	}
+
+	/**
+	 * Ends the RDF session and writes out all buffered content, but leaves the underlying stream
+	 * open, as needed for System.out. Nanopubs written afterwards start a new session.
+	 */
+	public synchronized void finish() throws IOException {
+		endSession();
+		writer.flush();
+	}
+
+	/**
+	 * Writes out all buffered content and closes the underlying stream.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		endSession();
+		writer.close();
+	}
+
+	private void endSession() {
+		if (sessionWriter != null) {
+			sessionWriter.endRDF();
+			sessionWriter = null;
+		}
+	}
+
+}
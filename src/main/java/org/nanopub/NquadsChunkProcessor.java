@@ -0,0 +1,340 @@
+package org.nanopub;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.eclipse.rdf4j.rio.ParserConfig;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+
+/**
+ * Parses large N-Quads files on several threads. The file is cut into byte ranges at line
+ * boundaries, and each cut is moved to the start of the next nanopub, so that every range contains
+ * only complete nanopubs and can be parsed independently. The start of a nanopub is found via its
+ * head graph, which links to the other three graphs of the nanopub.
+ *
+ * The handler is called concurrently from the parser threads and needs to be thread-safe. The
+ * order of the nanopubs is only kept within each range.
+ */
+public class NquadsChunkProcessor {
+
+	private static final Charset byteChars = Charset.forName("ISO-8859-1");
+
+	private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+	private static final String NANOPUB_TYPE = "http://www.nanopub.org/nschema#Nanopublication";
+	private static final String[] GRAPH_LINKS = new String[] {
+			"http://www.nanopub.org/nschema#hasAssertion",
+			"http://www.nanopub.org/nschema#hasProvenance",
+			"http://www.nanopub.org/nschema#hasPublicationInfo" };
+
+	// Number of graph runs kept while looking for the start of a nanopub (a nanopub has four
+	// graphs, so a few more are plenty):
+	private static final int maxGraphRuns = 16;
+
+	public static boolean isApplicable(RDFFormat format, File file) {
+		return RDFFormat.NQUADS.equals(format) && file != null && file.isFile() && !file.getName().matches(".*\\.(gz|gzip)");
+	}
+
+	public static void process(File file, NanopubHandler npHandler, int threadCount)
+			throws IOException, RDFParseException, RDFHandlerException, MalformedNanopubException {
+		process(file, npHandler, threadCount, null);
+	}
+
+	/**
+	 * Processes the file with the settings of NanopubParserSettings taken from the given config,
+	 * which can be null.
+	 */
+	public static void process(File file, NanopubHandler npHandler, int threadCount, ParserConfig config)
+			throws IOException, RDFParseException, RDFHandlerException, MalformedNanopubException {
+		List<Long> boundaries = getChunkBoundaries(file, threadCount);
+		List<ChunkParser> parsers = new ArrayList<>();
+		for (int i = 0 ; i < boundaries.size() - 1 ; i++) {
+			long start = boundaries.get(i);
+			long end = boundaries.get(i + 1);
+			if (end <= start) continue;
+			ChunkParser p = new ChunkParser(file, start, end, npHandler, config);
+			parsers.add(p);
+			p.start();
+		}
+		for (ChunkParser p : parsers) {
+			try {
+				p.join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while waiting for parser threads", ex);
+			}
+		}
+		for (ChunkParser p : parsers) {
+			p.rethrow();
+		}
+	}
+
+	/**
+	 * Returns the byte offsets at which the file can be split, including 0 and the file length.
+	 */
+	public static List<Long> getChunkBoundaries(File file, int chunkCount) throws IOException {
+		long length = file.length();
+		List<Long> boundaries = new ArrayList<>();
+		boundaries.add(0l);
+		for (int i = 1 ; i < chunkCount ; i++) {
+			long b = findNanopubStart(file, length * i / chunkCount);
+			if (b > boundaries.get(boundaries.size() - 1)) {
+				boundaries.add(b);
+			}
+		}
+		if (length > boundaries.get(boundaries.size() - 1)) {
+			boundaries.add(length);
+		}
+		return boundaries;
+	}
+
+	/**
+	 * Returns the offset of the first nanopub that starts at or after the given position, or the
+	 * file length if there is no such nanopub.
+	 */
+	static long findNanopubStart(File file, long pos) throws IOException {
+		if (pos <= 0) return 0;
+		long length = file.length();
+		FileInputStream fin = new FileInputStream(file);
+		try {
+			fin.getChannel().position(pos - 1);
+			LineReader r = new LineReader(new BufferedInputStream(fin), pos - 1);
+			// Move to the beginning of the next line:
+			if (r.readLine() == null) return length;
+
+			// Read up to the end of the first head graph, keeping only the last few runs of
+			// statements with the same graph, which are enough to find the start of the nanopub:
+			List<GraphRun> runs = new ArrayList<>();
+			String headGraph = null;
+			// Head graphs of nanopubs that might have started before the given position:
+			Set<String> skippedHeadGraphs = new HashSet<>();
+			long offset = r.getOffset();
+			String line;
+			while ((line = r.readLine()) != null) {
+				String context = getContext(line);
+				if (context != null) {
+					if (headGraph != null && !context.equals(headGraph)) {
+						long start = getNanopubStart(runs, headGraph);
+						if (start >= 0) return start;
+						// The head graph or other graphs of this nanopub might have started before the
+						// given position (or before the runs that were kept), so we skip to the next
+						// nanopub:
+						skippedHeadGraphs.add(headGraph);
+						headGraph = null;
+					}
+					GraphRun run = (runs.isEmpty() ? null : runs.get(runs.size() - 1));
+					if (run == null || !run.context.equals(context)) {
+						run = new GraphRun(offset, context);
+						runs.add(run);
+						if (runs.size() > maxGraphRuns) runs.remove(0);
+					}
+					String[] terms = getTerms(line);
+					if (headGraph == null && isNanopubTypeStatement(terms) && !skippedHeadGraphs.contains(context)) {
+						headGraph = context;
+					}
+					String linkedGraph = getLinkedGraph(terms);
+					if (linkedGraph != null) run.linkedGraphs.add(linkedGraph);
+				}
+				offset = r.getOffset();
+			}
+			if (headGraph != null) {
+				long start = getNanopubStart(runs, headGraph);
+				if (start >= 0) return start;
+			}
+			return length;
+		} finally {
+			fin.close();
+		}
+	}
+
+	/**
+	 * Returns the offset of the first statement of the nanopub whose head graph is the last of the
+	 * given runs, or -1 if the nanopub might have started before the first run.
+	 */
+	private static long getNanopubStart(List<GraphRun> runs, String headGraph) {
+		Set<String> graphs = new HashSet<>();
+		graphs.add(headGraph);
+		int start = runs.size() - 1;
+		graphs.addAll(runs.get(start).linkedGraphs);
+		// Go back to the first statement of this nanopub:
+		while (start > 0 && graphs.contains(runs.get(start - 1).context)) {
+			start--;
+		}
+		if (start == 0) return -1;
+		return runs.get(start).offset;
+	}
+
+	static String getContext(String line) {
+		String s = line.trim();
+		if (s.isEmpty() || s.startsWith("#") || !s.endsWith(".")) return null;
+		s = s.substring(0, s.length() - 1).trim();
+		if (!s.endsWith(">")) return null;
+		int i = s.lastIndexOf('<');
+		if (i < 0) return null;
+		return s.substring(i + 1, s.length() - 1);
+	}
+
+	/**
+	 * Returns the subject, predicate, and object of the given N-Quads line, as far as they are IRIs
+	 * or blank nodes (literals and everything after them are null). Terms can be separated by any
+	 * amount of spaces and tabs, including none.
+	 */
+	static String[] getTerms(String line) {
+		String[] terms = new String[3];
+		int i = 0;
+		for (int t = 0 ; t < 3 ; t++) {
+			while (i < line.length() && (line.charAt(i) == ' ' || line.charAt(i) == '\t')) i++;
+			if (i >= line.length()) break;
+			char c = line.charAt(i);
+			int end;
+			if (c == '<') {
+				end = line.indexOf('>', i);
+				if (end < 0) break;
+				terms[t] = line.substring(i + 1, end);
+				i = end + 1;
+			} else if (c == '_') {
+				end = i;
+				while (end < line.length() && " \t<\"".indexOf(line.charAt(end)) < 0) end++;
+				terms[t] = line.substring(i, end);
+				i = end;
+			} else {
+				break;
+			}
+		}
+		return terms;
+	}
+
+	static boolean isNanopubTypeStatement(String[] terms) {
+		return RDF_TYPE.equals(terms[1]) && NANOPUB_TYPE.equals(terms[2]);
+	}
+
+	static String getLinkedGraph(String[] terms) {
+		if (terms[1] == null || terms[2] == null) return null;
+		for (String link : GRAPH_LINKS) {
+			if (link.equals(terms[1])) return terms[2];
+		}
+		return null;
+	}
+
+
+	/**
+	 * Consecutive statements in the same graph.
+	 */
+	private static class GraphRun {
+
+		private final long offset;
+		private final String context;
+		private final Set<String> linkedGraphs = new HashSet<>();
+
+		GraphRun(long offset, String context) {
+			this.offset = offset;
+			this.context = context;
+		}
+
+	}
+
+
+	/**
+	 * Reads lines as raw bytes (one char per byte), so that string positions correspond to file offsets.
+	 */
+	private static class LineReader {
+
+		private InputStream in;
+		private long offset;
+		private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		LineReader(InputStream in, long offset) {
+			this.in = in;
+			this.offset = offset;
+		}
+
+		String readLine() throws IOException {
+			buffer.reset();
+			int b;
+			while ((b = in.read()) != -1) {
+				offset++;
+				if (b == '\n') {
+					return new String(buffer.toByteArray(), byteChars);
+				}
+				buffer.write(b);
+			}
+			if (buffer.size() == 0) return null;
+			return new String(buffer.toByteArray(), byteChars);
+		}
+
+		long getOffset() {
+			return offset;
+		}
+
+	}
+
+
+	private static class ChunkParser extends Thread {
+
+		private File file;
+		private long start, end;
+		private NanopubHandler npHandler;
+		private ParserConfig config;
+		private Exception exception;
+
+		ChunkParser(File file, long start, long end, NanopubHandler npHandler, ParserConfig config) {
+			super("nanopub-nquads-" + start);
+			this.file = file;
+			this.start = start;
+			this.end = end;
+			this.npHandler = npHandler;
+			this.config = config;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				FileInputStream fin = new FileInputStream(file);
+				try {
+					fin.getChannel().position(start);
+					InputStream in = new BoundedInputStream(new BufferedInputStream(fin), end - start);
+					RDFParser p = NanopubUtils.getParser(RDFFormat.NQUADS, config);
+					MultiNanopubRdfHandler handler = new MultiNanopubRdfHandler(npHandler);
+					handler.setTrustedInput(config != null && config.get(NanopubParserSettings.TRUSTED_INPUT));
+					p.setRDFHandler(handler);
+					p.parse(new InputStreamReader(in, Charset.forName("UTF-8")), "");
+				} finally {
+					fin.close();
+				}
+			} catch (RuntimeException ex) {
+				if ("wrapped MalformedNanopubException".equals(ex.getMessage()) &&
+						ex.getCause() instanceof MalformedNanopubException) {
+					exception = (MalformedNanopubException) ex.getCause();
+				} else {
+					exception = ex;
+				}
+			} catch (IOException ex) {
+				exception = ex;
+			}
+		}
+
+		void rethrow() throws IOException, MalformedNanopubException {
+			if (exception == null) return;
+			if (exception instanceof IOException) throw (IOException) exception;
+			if (exception instanceof MalformedNanopubException) throw (MalformedNanopubException) exception;
+			throw (RuntimeException) exception;
+		}
+
+	}
+
+}
@@ -0,0 +1,193 @@
+package org.nanopub;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks on a fixed pool of worker threads and passes their results on to a handler. At most
+ * a fixed number of tasks are pending at any time, so submit blocks if the workers cannot keep up.
+ *
+ * If the order is to be kept, the handler is called by one thread at a time and in the order in
+ * which the tasks were submitted, so the work that can be done in parallel belongs in the tasks
+ * and the handler should only emit the results. Otherwise, the handler is called concurrently from
+ * the worker threads as soon as a task is done, and needs to be thread-safe.
+ *
+ * After a task or the handler has thrown an exception, no further results are handled, and the
+ * exception is thrown by the next call of submit, await, or finish (wrapped in an
+ * ExecutionException).
+ */
+public class OrderedExecutor<T> {
+
+	private final ResultHandler<T> handler;
+	private final boolean keepOrder;
+	private final ExecutorService executor;
+	private final Semaphore slots;
+	private final int slotCount;
+
+	private long submitCount = 0;
+	private long nextToHandle = 0;
+	private final Map<Long,T> finished = new HashMap<>();
+	private final Object orderLock = new Object();
+	private volatile Exception failure;
+
+	/**
+	 * Creates a new executor with the given number of threads, whose names start with the given
+	 * name, and with at most maxPending tasks waiting or running at any time.
+	 */
+	public OrderedExecutor(String name, int threadCount, int maxPending, boolean keepOrder, ResultHandler<T> handler) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+		}
+		this.handler = handler;
+		this.keepOrder = keepOrder;
+		this.slotCount = Math.max(maxPending, threadCount);
+		this.slots = new Semaphore(slotCount);
+		this.executor = Executors.newFixedThreadPool(threadCount, new WorkerThreadFactory(name));
+	}
+
+	/**
+	 * Submits a task. Blocks if the maximum number of pending tasks is reached.
+	 */
+	public void submit(final Callable<T> task) throws ExecutionException {
+		checkFailure();
+		try {
+			slots.acquire();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for worker threads", ex);
+		}
+		final long seq = submitCount++;
+		try {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						if (failure != null) return;
+						handle(seq, task.call());
+					} catch (Exception ex) {
+						fail(ex);
+					} finally {
+						slots.release();
+					}
+				}
+
+			});
+		} catch (RejectedExecutionException ex) {
+			slots.release();
+			throw ex;
+		}
+	}
+
+	private void handle(long seq, T result) throws Exception {
+		if (!keepOrder) {
+			handler.handleResult(result);
+			return;
+		}
+		synchronized (orderLock) {
+			finished.put(seq, result);
+			while (failure == null && finished.containsKey(nextToHandle)) {
+				T r = finished.remove(nextToHandle);
+				nextToHandle++;
+				handler.handleResult(r);
+			}
+		}
+	}
+
+	private void fail(Exception ex) {
+		synchronized (this) {
+			if (failure == null) failure = ex;
+		}
+	}
+
+	/**
+	 * Waits until all submitted tasks are done and their results have been handled.
+	 */
+	public void await() throws ExecutionException {
+		try {
+			slots.acquire(slotCount);
+			slots.release(slotCount);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for worker threads", ex);
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Waits until all submitted tasks are done and their results have been handled, and shuts down
+	 * the worker threads.
+	 */
+	public void finish() throws ExecutionException {
+		try {
+			await();
+		} finally {
+			shutdown();
+		}
+	}
+
+	/**
+	 * Stops the worker threads without waiting for pending tasks.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void checkFailure() throws ExecutionException {
+		Exception ex = failure;
+		if (ex != null) throw new ExecutionException(ex);
+	}
+
+	/**
+	 * Returns the cause of the given exception if it is a runtime exception, or otherwise the cause
+	 * wrapped in a runtime exception.
+	 */
+	public static RuntimeException unwrap(ExecutionException ex) {
+		if (ex.getCause() instanceof RuntimeException) return (RuntimeException) ex.getCause();
+		return new RuntimeException(ex.getCause());
+	}
+
+
+	public interface ResultHandler<T> {
+
+		public void handleResult(T result) throws Exception;
+
+	}
+
+
+	private static class WorkerThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger poolCount = new AtomicInteger();
+
+		private final String name;
+		private final int poolNumber = poolCount.incrementAndGet();
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		WorkerThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, name + "-" + poolNumber + "-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+
+	}
+
+}
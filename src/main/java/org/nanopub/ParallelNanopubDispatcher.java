@@ -0,0 +1,143 @@
+package org.nanopub;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+import org.nanopub.MultiNanopubRdfHandler.TwoStepNanopubHandler;
+
+/**
+ * Hands the statement batches of single nanopubs over to a pool of worker threads, which create
+ * the nanopub objects and pass them on to the given handler. At most a fixed number of batches
+ * are in flight at any time, so the parsing thread blocks if the workers cannot keep up.
+ *
+ * If the input order has to be kept, the handler is called by one thread at a time and in the
+ * order in which the batches were submitted; otherwise the handler is called concurrently from
+ * the worker threads and needs to be thread-safe. For a TwoStepNanopubHandler, the prepare step
+ * is always run concurrently in the worker threads, and only the second step is called one at a
+ * time.
+ */
+public class ParallelNanopubDispatcher {
+
+	public static final int defaultQueueSizePerThread = 64;
+
+	private final NanopubHandler npHandler;
+	private final OrderedExecutor<Object> executor;
+	private volatile boolean trustedInput = false;
+
+	public ParallelNanopubDispatcher(NanopubHandler npHandler, int threadCount, boolean keepOrder) {
+		this(npHandler, threadCount, keepOrder, threadCount * defaultQueueSizePerThread);
+	}
+
+	public ParallelNanopubDispatcher(NanopubHandler npHandler, int threadCount, boolean keepOrder, int queueSize) {
+		this.npHandler = npHandler;
+		this.executor = new OrderedExecutor<Object>("nanopub-worker", threadCount, queueSize, keepOrder,
+				new OrderedExecutor.ResultHandler<Object>() {
+
+					@Override
+					public void handleResult(Object result) throws Exception {
+						if (result instanceof Prepared) {
+							((Prepared<?>) result).handle();
+						} else if (result instanceof Nanopub) {
+							ParallelNanopubDispatcher.this.npHandler.handleNanopub((Nanopub) result);
+						} else {
+							throw (Exception) result;
+						}
+					}
+
+				});
+	}
+
+	/**
+	 * If set to true, the IRIs of the nanopubs are not checked (see
+	 * NanopubParserSettings.TRUSTED_INPUT).
+	 */
+	public void setTrustedInput(boolean trustedInput) {
+		this.trustedInput = trustedInput;
+	}
+
+	/**
+	 * Submits the statements and namespaces of one nanopub. The given collections must not be
+	 * changed afterwards by the caller. Blocks if the maximum number of pending nanopubs is reached.
+	 */
+	public void submit(final List<Statement> statements, final List<String> nsPrefixes, final Map<String,String> ns)
+			throws MalformedNanopubException {
+		try {
+			executor.submit(new Callable<Object>() {
+
+				@Override
+				public Object call() {
+					Nanopub np;
+					try {
+						np = new NanopubImpl(statements, nsPrefixes, ns, trustedInput);
+					} catch (MalformedNanopubException ex) {
+						// Returned as result so that it is thrown in input order:
+						return ex;
+					}
+					if (npHandler instanceof TwoStepNanopubHandler) {
+						return prepare((TwoStepNanopubHandler<?>) npHandler, np);
+					}
+					return np;
+				}
+
+			});
+		} catch (ExecutionException ex) {
+			throw unwrap(ex);
+		}
+	}
+
+	private static <T> Prepared<T> prepare(TwoStepNanopubHandler<T> handler, Nanopub np) {
+		return new Prepared<T>(handler, np, handler.prepare(np));
+	}
+
+	/**
+	 * Waits until all submitted nanopubs have been handled and shuts down the worker threads.
+	 * The first exception that occurred in a worker thread is thrown here.
+	 */
+	public void finish() throws MalformedNanopubException {
+		try {
+			executor.finish();
+		} catch (ExecutionException ex) {
+			throw unwrap(ex);
+		}
+	}
+
+	/**
+	 * Stops the worker threads without waiting for pending nanopubs.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private static MalformedNanopubException unwrap(ExecutionException ex) {
+		if (ex.getCause() instanceof MalformedNanopubException) {
+			return (MalformedNanopubException) ex.getCause();
+		}
+		throw OrderedExecutor.unwrap(ex);
+	}
+
+
+	private static class Prepared<T> {
+
+		private final TwoStepNanopubHandler<T> handler;
+		private final Nanopub np;
+		private final T prepared;
+
+		Prepared(TwoStepNanopubHandler<T> handler, Nanopub np, T prepared) {
+			this.handler = handler;
+			this.np = np;
+			this.prepared = prepared;
+		}
+
+		void handle() {
+			synchronized (handler) {
+				handler.handlePrepared(np, prepared);
+			}
+		}
+
+	}
+
+}
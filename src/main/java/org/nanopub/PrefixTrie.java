@@ -0,0 +1,155 @@
+package org.nanopub;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps strings (such as namespaces) to values (such as prefixes), and finds the keys that are
+ * prefixes of a given string in a single pass over that string, without creating substrings.
+ */
+public class PrefixTrie {
+
+	private final Node root = new Node();
+	private int size = 0;
+
+	public PrefixTrie() {
+	}
+
+	public PrefixTrie(Map<String,String> map) {
+		for (String key : map.keySet()) {
+			put(key, map.get(key));
+		}
+	}
+
+	public void put(String key, String value) {
+		Node n = root;
+		for (int i = 0 ; i < key.length() ; i++) {
+			n = n.getOrCreateChild(key.charAt(i));
+		}
+		if (n.value == null) size++;
+		n.value = value;
+	}
+
+	/**
+	 * Removes the given key and returns its value, or null if it was not found.
+	 */
+	public String remove(String key) {
+		Node n = root;
+		for (int i = 0 ; i < key.length() && n != null ; i++) {
+			n = n.getChild(key.charAt(i));
+		}
+		if (n == null || n.value == null) return null;
+		String value = n.value;
+		n.value = null;
+		size--;
+		return value;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the value for the key that is equal to the first end characters of s, or null.
+	 */
+	public String get(String s, int end) {
+		if (end < 0 || end > s.length()) return null;
+		Node n = root;
+		for (int i = 0 ; i < end && n != null ; i++) {
+			n = n.getChild(s.charAt(i));
+		}
+		return n == null ? null : n.value;
+	}
+
+	/**
+	 * Returns the length of the longest key that is a prefix of s, or -1 if there is none.
+	 */
+	public int getLongestPrefixLength(String s) {
+		Node n = root;
+		int longest = (n.value == null ? -1 : 0);
+		for (int i = 0 ; i < s.length() ; i++) {
+			n = n.getChild(s.charAt(i));
+			if (n == null) break;
+			if (n.value != null) longest = i + 1;
+		}
+		return longest;
+	}
+
+	/**
+	 * Adds the values of all keys that are prefixes of s to the given list, shortest key first.
+	 */
+	public void collectPrefixValues(String s, List<String> results) {
+		Node n = root;
+		if (n.value != null) results.add(n.value);
+		for (int i = 0 ; i < s.length() ; i++) {
+			n = n.getChild(s.charAt(i));
+			if (n == null) return;
+			if (n.value != null) results.add(n.value);
+		}
+	}
+
+	/**
+	 * Looks up several prefixes of s at once: results[i] is set to the value for the key that is
+	 * equal to the first ends[i] characters of s, or to null if there is no such key (or if ends[i]
+	 * is negative or larger than the length of s).
+	 */
+	public void getAll(String s, int[] ends, String[] results) {
+		int maxEnd = -1;
+		for (int i = 0 ; i < ends.length ; i++) {
+			results[i] = null;
+			if (ends[i] <= s.length() && ends[i] > maxEnd) maxEnd = ends[i];
+		}
+		Node n = root;
+		for (int d = 0 ; d <= maxEnd ; d++) {
+			if (d > 0) {
+				n = n.getChild(s.charAt(d - 1));
+				if (n == null) return;
+			}
+			if (n.value == null) continue;
+			for (int i = 0 ; i < ends.length ; i++) {
+				if (ends[i] == d) results[i] = n.value;
+			}
+		}
+	}
+
+
+	private static class Node {
+
+		private static final char[] noChars = new char[0];
+		private static final Node[] noNodes = new Node[0];
+
+		private char[] chars = noChars;
+		private Node[] children = noNodes;
+		private String value;
+
+		Node getChild(char c) {
+			int i = Arrays.binarySearch(chars, c);
+			return i < 0 ? null : children[i];
+		}
+
+		Node getOrCreateChild(char c) {
+			int i = Arrays.binarySearch(chars, c);
+			if (i >= 0) return children[i];
+			i = -i - 1;
+			char[] newChars = new char[chars.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(chars, 0, newChars, 0, i);
+			System.arraycopy(children, 0, newChildren, 0, i);
+			System.arraycopy(chars, i, newChars, i + 1, chars.length - i);
+			System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+			Node child = new Node();
+			newChars[i] = c;
+			newChildren[i] = child;
+			chars = newChars;
+			children = newChildren;
+			return child;
+		}
+
+	}
+
+}
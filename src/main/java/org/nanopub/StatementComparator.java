@@ -0,0 +1,64 @@
+package org.nanopub;
+
+import java.util.Comparator;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+
+/**
+ * Orders statements by subject, predicate, object, and context, comparing the terms directly
+ * instead of their string representations. Blank nodes come before IRIs, and IRIs before literals.
+ * Literals with the same label are ordered by datatype and then by language tag.
+ */
+public class StatementComparator implements Comparator<Statement> {
+
+	private static final StatementComparator instance = new StatementComparator();
+
+	public static StatementComparator getInstance() {
+		return instance;
+	}
+
+	private StatementComparator() {
+	}
+
+	@Override
+	public int compare(Statement st1, Statement st2) {
+		if (st1 == st2) return 0;
+		int c = compareValues(st1.getSubject(), st2.getSubject());
+		if (c != 0) return c;
+		c = compareValues(st1.getPredicate(), st2.getPredicate());
+		if (c != 0) return c;
+		c = compareValues(st1.getObject(), st2.getObject());
+		if (c != 0) return c;
+		return compareValues(st1.getContext(), st2.getContext());
+	}
+
+	public static int compareValues(Value v1, Value v2) {
+		if (v1 == v2) return 0;
+		if (v1 == null) return -1;
+		if (v2 == null) return 1;
+		int t1 = getTypeRank(v1);
+		int t2 = getTypeRank(v2);
+		if (t1 != t2) return t1 - t2;
+		int c = v1.stringValue().compareTo(v2.stringValue());
+		if (c != 0 || t1 != 2) return c;
+		Literal l1 = (Literal) v1;
+		Literal l2 = (Literal) v2;
+		c = compareValues(l1.getDatatype(), l2.getDatatype());
+		if (c != 0) return c;
+		String lang1 = l1.getLanguage().orElse("");
+		String lang2 = l2.getLanguage().orElse("");
+		return lang1.compareTo(lang2);
+	}
+
+	private static int getTypeRank(Value v) {
+		if (v instanceof BNode) return 0;
+		if (v instanceof IRI) return 1;
+		if (v instanceof Literal) return 2;
+		return 3;
+	}
+
+}
@@ -0,0 +1,82 @@
+package org.nanopub.extra.security;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.KeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Caches decoded public keys and signature objects, as large sets of nanopubs are typically signed
+ * by just a few keys. Public keys are kept in a fixed-size table where newer entries replace older
+ * ones with the same slot, so the cache stays small and can be read without locking. Signature
+ * objects are not thread-safe and are therefore kept per thread.
+ */
+class CryptoCache {
+
+	private CryptoCache() {}  // no instances allowed
+
+	private static final int keyCacheSize = 1 << 8;
+	private static final PublicKeyEntry[] keyCache = new PublicKeyEntry[keyCacheSize];
+
+	private static final ThreadLocal<Map<String,Signature>> signatures = new ThreadLocal<Map<String,Signature>>() {
+
+		@Override
+		protected Map<String,Signature> initialValue() {
+			return new HashMap<>();
+		}
+
+	};
+
+	/**
+	 * Returns the public key for the given base64-encoded key string and key algorithm (e.g. "RSA").
+	 */
+	static PublicKey getPublicKey(String keyAlgorithm, String publicKeyString) throws GeneralSecurityException {
+		int slot = (publicKeyString.hashCode() * 31 + keyAlgorithm.hashCode()) & (keyCacheSize - 1);
+		PublicKeyEntry e = keyCache[slot];
+		if (e != null && e.keyString.equals(publicKeyString) && e.algorithm.equals(keyAlgorithm)) {
+			return e.publicKey;
+		}
+		KeySpec publicSpec = new X509EncodedKeySpec(DatatypeConverter.parseBase64Binary(publicKeyString));
+		PublicKey publicKey = KeyFactory.getInstance(keyAlgorithm).generatePublic(publicSpec);
+		keyCache[slot] = new PublicKeyEntry(keyAlgorithm, publicKeyString, publicKey);
+		return publicKey;
+	}
+
+	/**
+	 * Returns a signature object for the given JCA algorithm name (e.g. "SHA256withRSA") that is
+	 * reused within the current thread. It needs to be initialized with initSign or initVerify before
+	 * each use.
+	 */
+	static Signature getSignature(String signatureAlgorithm) throws GeneralSecurityException {
+		Map<String,Signature> map = signatures.get();
+		Signature signature = map.get(signatureAlgorithm);
+		if (signature == null) {
+			signature = Signature.getInstance(signatureAlgorithm);
+			map.put(signatureAlgorithm, signature);
+		}
+		return signature;
+	}
+
+
+	// Immutable, so entries can be shared between threads without locking:
+	private static class PublicKeyEntry {
+
+		final String algorithm;
+		final String keyString;
+		final PublicKey publicKey;
+
+		PublicKeyEntry(String algorithm, String keyString, PublicKey publicKey) {
+			this.algorithm = algorithm;
+			this.keyString = keyString;
+			this.publicKey = publicKey;
+		}
+
+	}
+
+}
@@ -9,10 +9,7 @@ import java.util.Map;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.config.CookieSpecs;
-import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 import org.eclipse.rdf4j.RDF4JException;
 import org.eclipse.rdf4j.model.IRI;
@@ -25,6 +22,7 @@ import org.eclipse.rdf4j.model.vocabulary.RDFS;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
 import org.eclipse.rdf4j.rio.turtle.TurtleParser;
+import org.nanopub.HttpTransport;
 import org.nanopub.Nanopub;
 import org.nanopub.extra.server.GetNanopub;
 
@@ -32,15 +30,6 @@ import net.trustyuri.TrustyUriUtils;
 
 public class IntroNanopub {
 
-	static HttpClient defaultHttpClient;
-
-	static {
-		RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(1000)
-				.setConnectionRequestTimeout(100).setSocketTimeout(1000)
-				.setCookieSpec(CookieSpecs.STANDARD).build();
-		defaultHttpClient = HttpClientBuilder.create().setDefaultRequestConfig(requestConfig).build();
-	}
-
 	public static IntroNanopub get(String userId) throws IOException, RDF4JException {
 		return get(userId, (HttpClient) null);
 	}
@@ -58,7 +47,7 @@ public class IntroNanopub {
 	}
 
 	public static IntroExtractor extract(String userId, HttpClient httpClient) throws IOException, RDF4JException {
-		if (httpClient == null) httpClient = defaultHttpClient;
+		if (httpClient == null) httpClient = HttpTransport.getServerHttpClient();
 		HttpGet get = new HttpGet(userId);
 		get.setHeader("Accept", "text/turtle");
 		InputStream in = null;
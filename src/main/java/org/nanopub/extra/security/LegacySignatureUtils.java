@@ -5,12 +5,9 @@ import static org.nanopub.extra.security.NanopubSignatureElement.HAS_SIGNATURE_E
 import static org.nanopub.extra.security.NanopubSignatureElement.SIGNED_BY;
 
 import java.security.GeneralSecurityException;
-import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.security.Signature;
-import java.security.spec.KeySpec;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.List;
 
 import javax.xml.bind.DatatypeConverter;
@@ -86,9 +83,8 @@ public class LegacySignatureUtils {
 	public static boolean hasValidSignature(NanopubSignatureElement se) throws GeneralSecurityException {
 		String artifactCode = TrustyUriUtils.getArtifactCode(se.getTargetNanopubUri().toString());
 		List<Statement> statements = RdfPreprocessor.run(se.getTargetStatements(), artifactCode);
-		Signature signature = Signature.getInstance("SHA1withDSA");
-		KeySpec publicSpec = new X509EncodedKeySpec(DatatypeConverter.parseBase64Binary(se.getPublicKeyString()));
-		PublicKey publicKey = KeyFactory.getInstance("DSA").generatePublic(publicSpec);
+		Signature signature = CryptoCache.getSignature("SHA1withDSA");
+		PublicKey publicKey = CryptoCache.getPublicKey("DSA", se.getPublicKeyString());
 		signature.initVerify(publicKey);
 		// Legacy signatures apply double digesting:
 		signature.update(RdfHasher.digest(statements).digest());
@@ -97,7 +93,7 @@ public class LegacySignatureUtils {
 
 	public static Nanopub createSignedNanopub(Nanopub preNanopub, KeyPair key, IRI signer)
 			throws GeneralSecurityException, RDFHandlerException, TrustyUriException, MalformedNanopubException {
-		Signature dsaSignature = Signature.getInstance("SHA1withDSA");
+		Signature dsaSignature = CryptoCache.getSignature("SHA1withDSA");
 		dsaSignature.initSign(key.getPrivate());
 
 		RdfFileContent content = new RdfFileContent(RDFFormat.TRIG);
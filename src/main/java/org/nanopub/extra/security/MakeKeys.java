@@ -21,7 +21,7 @@ public class MakeKeys {
 	@com.beust.jcommander.Parameter(names = "-f", description = "Path and file name prefix of key files")
 	private String pathAndFilenamePrefix = "~/.nanopub/id";
 
-	@com.beust.jcommander.Parameter(names = "-a", description = "Signature algorithm: either RSA or DSA")
+	@com.beust.jcommander.Parameter(names = "-a", description = "Signature algorithm: RSA, DSA, or ED25519")
 	private SignatureAlgorithm algorithm = SignatureAlgorithm.DSA;
 
 	public static void main(String[] args) throws IOException {
@@ -77,12 +77,17 @@ public class MakeKeys {
 		KeyPairGenerator keyPairGenerator;
 		SecureRandom random;
 		try {
-			keyPairGenerator = KeyPairGenerator.getInstance(algorithm.name());
+			keyPairGenerator = KeyPairGenerator.getInstance(algorithm.getKeyAlgorithmName());
 			random = SecureRandom.getInstance("SHA1PRNG");
 		} catch (GeneralSecurityException ex) {
 			throw new RuntimeException(ex);
 		}
-		keyPairGenerator.initialize(1024, random);
+		if (algorithm == SignatureAlgorithm.ED25519) {
+			// Ed25519 has a fixed key size:
+			keyPairGenerator.initialize(255, random);
+		} else {
+			keyPairGenerator.initialize(1024, random);
+		}
 		KeyPair keyPair = keyPairGenerator.genKeyPair();
 
 		FileOutputStream outPublic = new FileOutputStream(publicKeyFile);
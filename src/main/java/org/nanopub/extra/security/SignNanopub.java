@@ -35,10 +35,12 @@ import org.eclipse.rdf4j.rio.Rio;
 import org.nanopub.MalformedNanopubException;
 import org.nanopub.MultiNanopubRdfHandler;
 import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+import org.nanopub.MultiNanopubRdfHandler.TwoStepNanopubHandler;
 import org.nanopub.Nanopub;
 import org.nanopub.NanopubImpl;
 import org.nanopub.NanopubUtils;
 import org.nanopub.NanopubWithNs;
+import org.nanopub.NanopubWriter;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
@@ -57,12 +59,15 @@ public class SignNanopub {
 	@com.beust.jcommander.Parameter(names = "-k", description = "Path and file name of key files")
 	private String keyFilename;
 
-	@com.beust.jcommander.Parameter(names = "-a", description = "Signature algorithm: either RSA or DSA")
+	@com.beust.jcommander.Parameter(names = "-a", description = "Signature algorithm: RSA, DSA, or ED25519")
 	private SignatureAlgorithm algorithm;
 
 	@com.beust.jcommander.Parameter(names = "-v", description = "Verbose")
 	private boolean verbose = false;
 
+	@com.beust.jcommander.Parameter(names = "--threads", description = "Number of threads for signing nanopubs (output order stays the same)")
+	private int threads = 1;
+
 	public static void main(String[] args) throws IOException {
 		NanopubImpl.ensureLoaded();
 		SignNanopub obj = new SignNanopub();
@@ -86,6 +91,13 @@ public class SignNanopub {
 	private SignNanopub() {
 	}
 
+	// for testing
+	static void run(String... args) throws Exception {
+		SignNanopub obj = new SignNanopub();
+		new JCommander(obj).parse(args);
+		obj.run();
+	}
+
 	private void run() throws Exception {
 		if (algorithm == null) {
 			if (keyFilename == null) {
@@ -95,6 +107,8 @@ public class SignNanopub {
 				algorithm = SignatureAlgorithm.RSA;
 			} else if (keyFilename.endsWith("_dsa")) {
 				algorithm = SignatureAlgorithm.DSA;
+			} else if (keyFilename.endsWith("_ed25519")) {
+				algorithm = SignatureAlgorithm.ED25519;
 			} else {
 				// Assuming RSA if not other information is available
 				algorithm = SignatureAlgorithm.RSA;
@@ -104,59 +118,78 @@ public class SignNanopub {
 		}
 		key = loadKey(keyFilename, algorithm);
 
-		final OutputStream singleOut;
+		NanopubWriter singleWriter = null;
 		if (singleOutputFile != null) {
+			OutputStream singleOut;
 			if (singleOutputFile.getName().matches(".*\\.(gz|gzip)")) {
 				singleOut = new GZIPOutputStream(new FileOutputStream(singleOutputFile));
 			} else {
 				singleOut = new FileOutputStream(singleOutputFile);
 			}
-		} else {
-			singleOut = null;
+			RDFFormat outFormat = new TrustyUriResource(singleOutputFile).getFormat(RDFFormat.TRIG);
+			singleWriter = new NanopubWriter(singleOut, outFormat);
 		}
 
 		for (File inputFile : inputNanopubFiles) {
-			File outputFile;
-			final OutputStream out;
-			if (singleOutputFile == null) {
-				outputFile = new File(inputFile.getParent(), "signed." + inputFile.getName());
+			final NanopubWriter writer;
+			if (singleWriter == null) {
+				File outputFile = new File(inputFile.getParent(), "signed." + inputFile.getName());
+				OutputStream out;
 				if (inputFile.getName().matches(".*\\.(gz|gzip)")) {
 					out = new GZIPOutputStream(new FileOutputStream(outputFile));
 				} else {
 					out = new FileOutputStream(outputFile);
 				}
+				RDFFormat outFormat = new TrustyUriResource(outputFile).getFormat(RDFFormat.TRIG);
+				writer = new NanopubWriter(out, outFormat);
 			} else {
-				outputFile = singleOutputFile;
-				out = singleOut;
+				writer = singleWriter;
 			}
 			final RDFFormat inFormat = new TrustyUriResource(inputFile).getFormat(RDFFormat.TRIG);
-			final RDFFormat outFormat = new TrustyUriResource(outputFile).getFormat(RDFFormat.TRIG);
-			MultiNanopubRdfHandler.process(inFormat, inputFile, new NanopubHandler() {
+			// The nanopubs are signed in parallel, and written one at a time in input order:
+			MultiNanopubRdfHandler.process(inFormat, inputFile, new TwoStepNanopubHandler<Nanopub>() {
+
+				@Override
+				public Nanopub prepare(Nanopub np) {
+					return sign(np);
+				}
 
 				@Override
-				public void handleNanopub(Nanopub np) {
-					try {
-						np = writeAsSignedTrustyNanopub(np, outFormat, algorithm, key, out);
-						if (verbose) {
-							System.out.println("Nanopub URI: " + np.getUri());
-						}
-					} catch (RDFHandlerException ex) {
-						ex.printStackTrace();
-						throw new RuntimeException(ex);
-					} catch (TrustyUriException ex) {
-						ex.printStackTrace();
-						throw new RuntimeException(ex);
-					} catch (InvalidKeyException ex) {
-						ex.printStackTrace();
-						throw new RuntimeException(ex);
-					} catch (SignatureException ex) {
-						ex.printStackTrace();
-						throw new RuntimeException(ex);
-					}
+				public void handlePrepared(Nanopub np, Nanopub signed) {
+					writeSigned(signed, writer);
 				}
 
-			});
-			out.close();
+			}, threads, true);
+			if (writer != singleWriter) writer.close();
+		}
+		if (singleWriter != null) singleWriter.close();
+	}
+
+	// Can be called from several threads at the same time (the signature objects are kept per thread):
+	private Nanopub sign(Nanopub np) {
+		try {
+			return signAndTransform(np, algorithm, key);
+		} catch (TrustyUriException ex) {
+			ex.printStackTrace();
+			throw new RuntimeException(ex);
+		} catch (InvalidKeyException ex) {
+			ex.printStackTrace();
+			throw new RuntimeException(ex);
+		} catch (SignatureException ex) {
+			ex.printStackTrace();
+			throw new RuntimeException(ex);
+		}
+	}
+
+	private void writeSigned(Nanopub np, NanopubWriter writer) {
+		try {
+			writer.write(np);
+		} catch (RDFHandlerException ex) {
+			ex.printStackTrace();
+			throw new RuntimeException(ex);
+		}
+		if (verbose) {
+			System.out.println("Nanopub URI: " + np.getUri());
 		}
 	}
 
@@ -226,7 +259,7 @@ public class SignNanopub {
 
 	public static KeyPair loadKey(String keyFilename, SignatureAlgorithm algorithm) throws NoSuchAlgorithmException, IOException, InvalidKeySpecException {
 		keyFilename = SignatureUtils.getFullFilePath(keyFilename);
-		KeyFactory kf = KeyFactory.getInstance(algorithm.name());
+		KeyFactory kf = KeyFactory.getInstance(algorithm.getKeyAlgorithmName());
 		byte[] privateKeyBytes = DatatypeConverter.parseBase64Binary(IOUtils.toString(new FileInputStream(keyFilename), "UTF-8"));
 		KeySpec privateSpec = new PKCS8EncodedKeySpec(privateKeyBytes);
 		PrivateKey privateKey = kf.generatePrivate(privateSpec);
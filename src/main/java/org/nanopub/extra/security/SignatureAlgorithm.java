@@ -3,6 +3,31 @@ package org.nanopub.extra.security;
 // See: https://docs.oracle.com/javase/8/docs/technotes/guides/security/StandardNames.html#Signature
 
 public enum SignatureAlgorithm {
-	RSA,
-	DSA
+	RSA("RSA", "SHA256withRSA"),
+	DSA("DSA", "SHA256withDSA"),
+	// Needs Java 15 or later (or a security provider that supports Ed25519):
+	ED25519("Ed25519", "Ed25519");
+
+	private final String keyAlgorithmName;
+	private final String signatureAlgorithmName;
+
+	private SignatureAlgorithm(String keyAlgorithmName, String signatureAlgorithmName) {
+		this.keyAlgorithmName = keyAlgorithmName;
+		this.signatureAlgorithmName = signatureAlgorithmName;
+	}
+
+	/**
+	 * Returns the name for KeyFactory and KeyPairGenerator.
+	 */
+	public String getKeyAlgorithmName() {
+		return keyAlgorithmName;
+	}
+
+	/**
+	 * Returns the name for Signature.getInstance.
+	 */
+	public String getSignatureAlgorithmName() {
+		return signatureAlgorithmName;
+	}
+
 }
@@ -5,12 +5,9 @@ import static org.nanopub.extra.security.NanopubSignatureElement.HAS_SIGNATURE_T
 import static org.nanopub.extra.security.NanopubSignatureElement.SIGNED_BY;
 
 import java.security.GeneralSecurityException;
-import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.security.Signature;
-import java.security.spec.KeySpec;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -33,13 +30,13 @@ import org.nanopub.NanopubImpl;
 import org.nanopub.NanopubRdfHandler;
 import org.nanopub.NanopubUtils;
 import org.nanopub.NanopubWithNs;
+import org.nanopub.trusty.StreamingRdfHasher;
 import org.nanopub.trusty.TempUriReplacer;
 import org.nanopub.trusty.TrustyNanopubUtils;
 
 import net.trustyuri.TrustyUriException;
 import net.trustyuri.TrustyUriUtils;
 import net.trustyuri.rdf.RdfFileContent;
-import net.trustyuri.rdf.RdfHasher;
 import net.trustyuri.rdf.RdfPreprocessor;
 import net.trustyuri.rdf.TransformRdf;
 
@@ -104,19 +101,26 @@ public class SignatureUtils {
 	public static boolean hasValidSignature(NanopubSignatureElement se) throws GeneralSecurityException {
 		String artifactCode = TrustyUriUtils.getArtifactCode(se.getTargetNanopubUri().toString());
 		List<Statement> statements = RdfPreprocessor.run(se.getTargetStatements(), artifactCode);
-		Signature signature = Signature.getInstance("SHA256with" + se.getAlgorithm().name());
-		KeySpec publicSpec = new X509EncodedKeySpec(DatatypeConverter.parseBase64Binary(se.getPublicKeyString()));
-		PublicKey publicKey = KeyFactory.getInstance(se.getAlgorithm().name()).generatePublic(publicSpec);
+		Signature signature = getSignature(se.getAlgorithm());
+		PublicKey publicKey = CryptoCache.getPublicKey(se.getAlgorithm().getKeyAlgorithmName(), se.getPublicKeyString());
 		signature.initVerify(publicKey);
 
 //		System.err.println("SIGNATURE INPUT: ---");
 //		System.err.print(RdfHasher.getDigestString(statements));
 //		System.err.println("---");
 
-		signature.update(RdfHasher.getDigestString(statements).getBytes());
+		StreamingRdfHasher.update(signature, statements);
 		return signature.verify(se.getSignature());
 	}
 
+	/**
+	 * Returns a signature object for the given algorithm that is reused within the current thread.
+	 * It needs to be initialized with initSign or initVerify before each use.
+	 */
+	private static Signature getSignature(SignatureAlgorithm algorithm) throws GeneralSecurityException {
+		return CryptoCache.getSignature(algorithm.getSignatureAlgorithmName());
+	}
+
 	public static Nanopub createSignedNanopub(Nanopub preNanopub, SignatureAlgorithm algorithm, KeyPair key, IRI signer)
 			throws GeneralSecurityException, RDFHandlerException, TrustyUriException, MalformedNanopubException {
 		// TODO: Test this more
@@ -127,7 +131,7 @@ public class SignatureUtils {
 			preNanopub = new NanopubImpl(r.getStatements(), r.getNamespaces());
 		}
 
-		Signature signature = Signature.getInstance("SHA256with" + algorithm.name());
+		Signature signature = getSignature(algorithm);
 		signature.initSign(key.getPrivate());
 
 		List<Statement> preStatements = NanopubUtils.getStatements(preNanopub);
@@ -168,7 +172,7 @@ public class SignatureUtils {
 		List<Statement> preprocessedStatements = RdfPreprocessor.run(preStatements, npUri);
 
 		// Create signature:
-		signature.update(RdfHasher.getDigestString(preprocessedStatements).getBytes());
+		StreamingRdfHasher.update(signature, preprocessedStatements);
 		byte[] signatureBytes = signature.sign();
 		Literal signatureLiteral = vf.createLiteral(DatatypeConverter.printBase64Binary(signatureBytes));
 
@@ -0,0 +1,277 @@
+package org.nanopub.extra.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.nanopub.NanopubWriter;
+
+import net.trustyuri.TrustyUriUtils;
+
+/**
+ * Records the progress of fetching an index in a file, so that an interrupted fetch can be
+ * resumed. The file has one line per event: "Q" for found index nanopubs, "I" for index nanopubs
+ * whose elements and subindexes have been recorded, "P" for found content nanopubs, and "W" for
+ * the artifact codes of nanopubs that were written to the output.
+ *
+ * Lines are written in batches. Before each batch, the output is flushed, so the file never
+ * records nanopubs as written that are not in the output yet. Each batch ends with an "L" line
+ * with the length of the output file at that point (or -1 if unknown). When loading, lines of an
+ * incomplete last batch are dropped, and when resuming, the output file is cut back to the
+ * recorded length (see truncateOutputFile). This removes partly written nanopubs and nanopubs that
+ * are not recorded as written, so the output does not get broken or duplicate nanopubs.
+ *
+ * Instances are not thread-safe.
+ */
+public class FetchCheckpoint implements Closeable {
+
+	public static final int defaultBatchSize = 1000;
+
+	private final File file;
+	private final File outputFile;
+	private long outputLength = -1;
+	private final Set<String> traversedIndexUris = new HashSet<>();
+	private final Set<String> writtenArtifactCodes = new HashSet<>();
+	private List<String> pendingIndexUris = new ArrayList<>();
+	private List<String> pendingElementUris = new ArrayList<>();
+	private boolean resumed = false;
+	private NanopubWriter output;
+	private Writer fileWriter;
+	private StringBuilder batch = new StringBuilder();
+	private int batchCount = 0;
+	private int batchSize = defaultBatchSize;
+
+	/**
+	 * Opens the given checkpoint file, reading the progress recorded in it if it exists.
+	 */
+	public FetchCheckpoint(File file) throws IOException {
+		this(file, null);
+	}
+
+	/**
+	 * Opens the given checkpoint file for fetching into the given output file, reading the progress
+	 * recorded in it if it exists.
+	 */
+	public FetchCheckpoint(File file, File outputFile) throws IOException {
+		this.file = file;
+		this.outputFile = outputFile;
+		if (file.exists()) load();
+		fileWriter = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+	}
+
+	private void load() throws IOException {
+		Set<String> foundIndexUris = new LinkedHashSet<>();
+		Set<String> foundElementUris = new LinkedHashSet<>();
+		List<String> batchLines = new ArrayList<>();
+		long completeLength = 0;
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+			long pos = 0;
+			int b;
+			// The last line is not read if it has no line break, which happens if the process was
+			// killed while writing it:
+			while ((b = in.read()) != -1) {
+				pos++;
+				if (b != '\n') {
+					lineBytes.write(b);
+					continue;
+				}
+				String line = lineBytes.toString("UTF-8");
+				lineBytes.reset();
+				if (!line.startsWith("L ")) {
+					batchLines.add(line);
+					continue;
+				}
+				// The batch is complete, so its lines can be taken over:
+				try {
+					outputLength = Long.parseLong(line.substring(2));
+				} catch (NumberFormatException ex) {
+					throw new IOException("Corrupt checkpoint file: " + file, ex);
+				}
+				for (String l : batchLines) {
+					if (l.length() < 3 || l.charAt(1) != ' ') continue;
+					String value = l.substring(2);
+					switch (l.charAt(0)) {
+						case 'Q':
+							foundIndexUris.add(value);
+							break;
+						case 'I':
+							traversedIndexUris.add(value);
+							break;
+						case 'P':
+							foundElementUris.add(value);
+							break;
+						case 'W':
+							writtenArtifactCodes.add(value);
+							break;
+						default:
+							continue;
+					}
+				}
+				batchLines.clear();
+				completeLength = pos;
+				resumed = true;
+			}
+		} finally {
+			in.close();
+		}
+		// Lines of an incomplete batch are removed, so they don't become part of the next batch:
+		if (file.length() > completeLength) truncate(file, completeLength);
+		for (String uri : foundIndexUris) {
+			if (!traversedIndexUris.contains(uri)) pendingIndexUris.add(uri);
+		}
+		for (String uri : foundElementUris) {
+			if (!writtenArtifactCodes.contains(TrustyUriUtils.getArtifactCode(uri))) pendingElementUris.add(uri);
+		}
+	}
+
+	/**
+	 * Returns true if the checkpoint file already contained recorded progress.
+	 */
+	public boolean isResumed() {
+		return resumed;
+	}
+
+	/**
+	 * Returns the length of the output file that was recorded with the last complete batch, or -1
+	 * if unknown.
+	 */
+	public long getOutputLength() {
+		return outputLength;
+	}
+
+	/**
+	 * Cuts the output file back to the length that was recorded with the last complete batch. This
+	 * has to be done before resuming, so the output is continued right after the last nanopub that
+	 * is recorded as written.
+	 */
+	public void truncateOutputFile() throws IOException {
+		if (outputFile == null || outputLength < 0) {
+			throw new IOException("No output length recorded in checkpoint file: " + file);
+		}
+		if (outputFile.length() < outputLength) {
+			throw new IOException("Output file is shorter than recorded in checkpoint file: " + outputFile);
+		}
+		truncate(outputFile, outputLength);
+	}
+
+	private static void truncate(File f, long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Returns the index nanopubs that were found but not traversed before, and removes them from
+	 * this object, so they are resumed only once.
+	 */
+	public List<String> takePendingIndexUris() {
+		List<String> l = pendingIndexUris;
+		pendingIndexUris = new ArrayList<>();
+		return l;
+	}
+
+	/**
+	 * Returns the content nanopubs that were found but not written before, and removes them from
+	 * this object, so they are resumed only once.
+	 */
+	public List<String> takePendingElementUris() {
+		List<String> l = pendingElementUris;
+		pendingElementUris = new ArrayList<>();
+		return l;
+	}
+
+	public boolean isTraversed(String indexUri) {
+		return traversedIndexUris.contains(indexUri);
+	}
+
+	public boolean isWritten(String artifactCode) {
+		return writtenArtifactCodes.contains(artifactCode);
+	}
+
+	/**
+	 * Sets the output that is flushed before each batch of lines is written to the checkpoint file.
+	 */
+	public void setOutput(NanopubWriter output) {
+		this.output = output;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public void indexFound(String indexUri) throws IOException {
+		record('Q', indexUri);
+	}
+
+	/**
+	 * Marks the index as traversed. This has to be called after the found elements and
+	 * subindexes of the index have been recorded.
+	 */
+	public void indexTraversed(String indexUri) throws IOException {
+		traversedIndexUris.add(indexUri);
+		record('I', indexUri);
+	}
+
+	public void elementFound(String elementUri) throws IOException {
+		record('P', elementUri);
+	}
+
+	/**
+	 * Marks the nanopub as written. This has to be called after it has been passed to the output.
+	 */
+	public void nanopubWritten(String artifactCode) throws IOException {
+		writtenArtifactCodes.add(artifactCode);
+		record('W', artifactCode);
+	}
+
+	private void record(char type, String value) throws IOException {
+		batch.append(type).append(' ').append(value).append('\n');
+		batchCount++;
+		if (batchCount >= batchSize) flush();
+	}
+
+	public void flush() throws IOException {
+		if (batchCount == 0) return;
+		if (output != null) output.flush();
+		batch.append("L ").append(outputFile == null ? -1 : outputFile.length()).append('\n');
+		fileWriter.write(batch.toString());
+		fileWriter.flush();
+		batch.setLength(0);
+		batchCount = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (fileWriter == null) return;
+		flush();
+		fileWriter.close();
+		fileWriter = null;
+	}
+
+	/**
+	 * Closes and deletes the checkpoint file, which is done when the fetching has completed.
+	 */
+	public void delete() throws IOException {
+		close();
+		file.delete();
+	}
+
+}
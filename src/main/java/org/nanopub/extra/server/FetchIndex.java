@@ -1,46 +1,91 @@
 package org.nanopub.extra.server;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.config.CookieSpecs;
-import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.rio.ParserConfig;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.nanopub.HttpTransport;
 import org.nanopub.Nanopub;
-import org.nanopub.NanopubUtils;
+import org.nanopub.NanopubWriter;
 import org.nanopub.extra.index.IndexUtils;
 import org.nanopub.extra.index.NanopubIndex;
 import org.nanopub.extra.server.ServerInfo.ServerInfoException;
 
 import net.trustyuri.TrustyUriUtils;
 
+/**
+ * Fetches an index with its subindexes, appended indexes, and (optionally) content nanopubs from
+ * the nanopub server network. The HTTP requests run on a fixed thread pool and report back through
+ * a completion queue, which is processed by the thread that calls run().
+ *
+ * The number of parallel requests per server is adapted to how the server responds, and the
+ * servers to try are picked at random weighted by their estimated throughput (see ServerStats).
+ *
+ * With a checkpoint (see FetchCheckpoint), an interrupted fetch can be resumed: the indexes and
+ * content nanopubs that were still pending are fetched, and nanopubs that were already written are
+ * skipped.
+ *
+ * If GetNanopub has a local nanopub cache, nanopubs found there are not requested from servers.
+ */
 public class FetchIndex {
 
-	public static final int maxParallelRequestsPerServer = 5;
+	public static final int maxPendingTasks = 3000;
+	private static final int maxSkippedTasks = 100;
 
-	private OutputStream out;
-	private RDFFormat format;
+	private static final int RESULT_ABORTED = 0;
+	private static final int RESULT_OK = 1;
+	private static final int RESULT_TIMEOUT = 2;
+	private static final int RESULT_ERROR = 3;
+
+	private String indexUri;
+	private NanopubWriter writer;
+	private FetchCheckpoint checkpoint;
+	private ParserConfig parserConfig;
 	private boolean writeIndex, writeContent;
 	private boolean running = false;
-	private List<FetchNanopubTask> fetchTasks;
+	// Tasks waiting for a server; index tasks come first:
+	private Deque<FetchNanopubTask> waitingIndexTasks;
+	private Deque<FetchNanopubTask> waitingContentTasks;
+	// Tasks whose untried servers are all taken out by the circuit breaker:
+	private Deque<FetchNanopubTask> parkedTasks;
+	// Servers taken out by the circuit breaker when the tasks were last assigned:
+	private Set<String> circuitBlockedServers;
+	// Fetched indexes whose elements are not yet added as tasks:
+	private Deque<FetchNanopubTask> fetchedIndexTasks;
+	private BlockingQueue<FetchNanopubTask> completedTasks;
+	private int taskCount;
+	private int runningCount;
+	private ExecutorService executor;
 	private List<ServerInfo> servers;
 	private ServerInfo localServerInfo;
-	private Map<String,Set<FetchNanopubTask>> serverLoad;
+	private Map<String,ServerStats> serverStats;
 	private Map<String,NanopubSurfacePattern> serverPatterns;
-	private Map<String,Integer> serverUsage;
+	private Random random = new Random();
 	private int nanopubCount;
 	private Listener listener;
 	private HttpClient httpClient;
@@ -49,23 +94,14 @@ public class FetchIndex {
 	}
 
 	public FetchIndex(String indexUri, OutputStream out, RDFFormat format, boolean writeIndex, boolean writeContent, String localServer) {
-		this.out = out;
-		this.format = format;
-		this.writeIndex = writeIndex;
-		this.writeContent = writeContent;
-		fetchTasks = new ArrayList<>();
-		fetchTasks.add(new FetchNanopubTask(indexUri, true));
-		servers = new ArrayList<>();
-		serverLoad = new HashMap<>();
-		serverPatterns = new HashMap<>();
-		serverUsage = new HashMap<>();
+		this(indexUri, new NanopubWriter(out, format), writeIndex, writeContent, localServer);
+	}
+
+	public FetchIndex(String indexUri, NanopubWriter writer, boolean writeIndex, boolean writeContent, String localServer) {
+		init(indexUri, writer, writeIndex, writeContent);
 		ServerIterator serverIterator = new ServerIterator();
 		while (serverIterator.hasNext()) {
-			ServerInfo serverInfo = serverIterator.next();
-			servers.add(serverInfo);
-			serverLoad.put(serverInfo.getPublicUrl(), new HashSet<FetchNanopubTask>());
-			serverPatterns.put(serverInfo.getPublicUrl(), new NanopubSurfacePattern(serverInfo));
-			serverUsage.put(serverInfo.getPublicUrl(), 0);
+			addServer(serverIterator.next());
 		}
 		try {
 			ServerIterator.writeCachedServers(servers);
@@ -74,172 +110,509 @@ public class FetchIndex {
 			try {
 				localServerInfo = ServerInfo.load(localServer);
 				servers.add(localServerInfo);
-				serverLoad.put(localServer, new HashSet<FetchNanopubTask>());
+				serverStats.put(localServer, new ServerStats());
 				serverPatterns.put(localServer, new NanopubSurfacePattern(localServerInfo));
-				serverUsage.put(localServer, 0);
 			} catch (ServerInfoException ex) {
 				ex.printStackTrace();
 				return;
 			}
 		}
+	}
+
+	// Fetches from the given servers instead of the server network (for testing):
+	FetchIndex(String indexUri, NanopubWriter writer, boolean writeIndex, boolean writeContent, List<ServerInfo> servers) {
+		init(indexUri, writer, writeIndex, writeContent);
+		for (ServerInfo serverInfo : servers) {
+			addServer(serverInfo);
+		}
+	}
+
+	private void init(String indexUri, NanopubWriter writer, boolean writeIndex, boolean writeContent) {
+		this.indexUri = indexUri;
+		this.writer = writer;
+		this.writeIndex = writeIndex;
+		this.writeContent = writeContent;
+		waitingIndexTasks = new ArrayDeque<>();
+		waitingContentTasks = new ArrayDeque<>();
+		parkedTasks = new ArrayDeque<>();
+		circuitBlockedServers = new HashSet<>();
+		fetchedIndexTasks = new ArrayDeque<>();
+		completedTasks = new LinkedBlockingQueue<>();
+		taskCount = 0;
+		runningCount = 0;
+		servers = new ArrayList<>();
+		serverStats = new HashMap<>();
+		serverPatterns = new HashMap<>();
 		nanopubCount = 0;
-		RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(2000)
-				.setConnectionRequestTimeout(100).setSocketTimeout(2000)
-				.setCookieSpec(CookieSpecs.STANDARD).build();
-		PoolingHttpClientConnectionManager connManager = new PoolingHttpClientConnectionManager();
-		connManager.setDefaultMaxPerRoute(10);
-		connManager.setMaxTotal(1000);
-		httpClient = HttpClientBuilder.create().setDefaultRequestConfig(requestConfig)
-				.setConnectionManager(connManager).build();
+		httpClient = HttpTransport.getServerHttpClient();
+	}
+
+	private void addServer(ServerInfo serverInfo) {
+		servers.add(serverInfo);
+		serverStats.put(serverInfo.getPublicUrl(), new ServerStats());
+		serverPatterns.put(serverInfo.getPublicUrl(), new NanopubSurfacePattern(serverInfo));
 	}
 
 	public void run() {
 		if (running) return;
 		running = true;
-		while (!fetchTasks.isEmpty()) {
-			checkTasks();
+		// The number of running requests is already limited per server by ServerStats. A worker
+		// reports its task as completed before it is idle again, so new requests are queued instead
+		// of handed over directly (which could get them rejected):
+		int threadCount = Math.max(1, servers.size() * ServerStats.maxParallelRequests);
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+			private int n = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "nanopub-fetch-" + (n++));
+				t.setDaemon(true);
+				return t;
+			}
+
+		});
+		// Threads are only kept while they are needed:
+		pool.allowCoreThreadTimeOut(true);
+		executor = pool;
+		try {
+			addInitialTasks();
+			while (taskCount > 0) {
+				processFetchedIndexes();
+				assignTasks();
+				long waitMillis = getMillisUntilServerAvailable();
+				if (runningCount == 0) {
+					removeCancelledParkedTasks();
+					if (waitingIndexTasks.isEmpty() && waitingContentTasks.isEmpty() && parkedTasks.isEmpty()) {
+						if (!fetchedIndexTasks.isEmpty()) {
+							// Nothing else left to do, so we cannot wait for the number of tasks to go down:
+							processFetchedIndex(fetchedIndexTasks.removeFirst());
+						}
+					} else {
+						// The remaining servers are taken out by the circuit breaker:
+						Thread.sleep(waitMillis < 0 ? 1000 : waitMillis);
+					}
+					continue;
+				}
+				FetchNanopubTask task;
+				if (parkedTasks.isEmpty() || waitMillis < 0) {
+					task = completedTasks.take();
+				} else {
+					// Parked tasks can go to the server taken out by the circuit breaker when its waiting time is over:
+					task = completedTasks.poll(waitMillis, TimeUnit.MILLISECONDS);
+					if (task == null) continue;
+				}
+				do {
+					handleCompletedTask(task);
+					task = completedTasks.poll();
+				} while (task != null);
+			}
+			writer.flush();
+			if (checkpoint != null) checkpoint.flush();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while fetching index", ex);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void addInitialTasks() throws IOException {
+		if (checkpoint == null) {
+			addRootIndexTask(indexUri);
+			return;
+		}
+		checkpoint.setOutput(writer);
+		for (String uri : checkpoint.takePendingElementUris()) {
+			addContentTask(uri);
+		}
+		List<String> pendingIndexUris = checkpoint.takePendingIndexUris();
+		// Index tasks are added to the front, so we add them in reverse order:
+		for (int i = pendingIndexUris.size() - 1 ; i >= 0 ; i--) {
+			addIndexTasks(pendingIndexUris.get(i));
+		}
+		if (!checkpoint.isTraversed(indexUri) && !pendingIndexUris.contains(indexUri)) {
+			checkpoint.indexFound(indexUri);
+			addRootIndexTask(indexUri);
+		}
+	}
+
+	/**
+	 * Sets the checkpoint for recording the progress and resuming from it. This has to be done
+	 * before calling run().
+	 */
+	public void setCheckpoint(FetchCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Sets the config for parsing the retrieved nanopubs (see NanopubParserSettings).
+	 */
+	public void setParserConfig(ParserConfig parserConfig) {
+		this.parserConfig = parserConfig;
+	}
+
+	private void addRootIndexTask(String uri) {
+		if (addCachedIndex(uri)) return;
+		addTask(new FetchNanopubTask(uri, true));
+	}
+
+	private void addIndexTasks(String uri) {
+		if (addCachedIndex(uri)) return;
+		// Failing to get indexes can block the entire process, therefore
+		// we launch three sibling tasks at the same time:
+		FetchNanopubTask t1 = new FetchNanopubTask(uri, true);
+		addTask(t1);
+		FetchNanopubTask t2 = new FetchNanopubTask(uri, true, t1);
+		addTask(t2);
+		FetchNanopubTask t3 = new FetchNanopubTask(uri, true, t1, t2);
+		addTask(t3);
+	}
+
+	private boolean addCachedIndex(String uri) {
+		Nanopub np = getCachedNanopub(uri);
+		if (np == null) return false;
+		FetchNanopubTask task = new FetchNanopubTask(uri, true);
+		task.setNanopub(np);
+		taskCount++;
+		fetchedIndexTasks.addLast(task);
+		return true;
+	}
+
+	private void addContentTask(String uri) throws RDFHandlerException, IOException {
+		Nanopub np = getCachedNanopub(uri);
+		if (np != null) {
+			writeNanopub(np);
+			return;
+		}
+		addTask(new FetchNanopubTask(uri, false));
+	}
+
+	private Nanopub getCachedNanopub(String npUri) {
+		NanopubCache npCache = GetNanopub.getNanopubCache();
+		if (npCache == null) return null;
+		return npCache.get(TrustyUriUtils.getArtifactCode(npUri));
+	}
+
+	private void addTask(FetchNanopubTask task) {
+		taskCount++;
+		if (task.isIndex()) {
+			waitingIndexTasks.addFirst(task);
+		} else {
+			waitingContentTasks.addLast(task);
+		}
+	}
+
+	private void finishTask() {
+		taskCount--;
+	}
+
+	private void handleCompletedTask(FetchNanopubTask task) {
+		runningCount--;
+		ServerStats stats = serverStats.get(task.getLastServerUrl());
+		switch (task.getResult()) {
+			case RESULT_OK:
+				stats.requestSucceeded(task.getLatency());
+				break;
+			case RESULT_TIMEOUT:
+				stats.requestTimedOut(task.isTrial(), task.getLatency());
+				break;
+			case RESULT_ERROR:
+				stats.requestFailed(task.isTrial(), task.getLatency());
+				break;
+			default:
+				stats.requestAborted(task.isTrial());
+		}
+		if (task.getResult() != RESULT_ABORTED && !task.isCancelled()) {
+			for (FetchNanopubTask s : task.getSiblings()) {
+				s.cancel();
+			}
+			stats.countUsage();
+		}
+		if (task.isCancelled()) {
+			finishTask();
+		} else if (task.getNanopub() == null) {
+			// Try again with another server:
+			if (task.isIndex()) {
+				waitingIndexTasks.addFirst(task);
+			} else {
+				waitingContentTasks.addFirst(task);
+			}
+		} else if (task.isIndex()) {
+			fetchedIndexTasks.addLast(task);
+		} else {
 			try {
-				Thread.sleep(5);
-			} catch (InterruptedException ex) {}
+				writeNanopub(task.getNanopub());
+			} catch (Exception ex) {
+				throw new RuntimeException(ex);
+			}
+			finishTask();
 		}
 	}
 
-	private void checkTasks() {
-		for (FetchNanopubTask task : new ArrayList<>(fetchTasks)) {
-			if (task.isRunning()) continue;
-			if (task.isCancelled()) {
-				fetchTasks.remove(task);
-				continue;
+	private void processFetchedIndexes() {
+		while (!fetchedIndexTasks.isEmpty() && taskCount < maxPendingTasks) {
+			processFetchedIndex(fetchedIndexTasks.removeFirst());
+		}
+	}
+
+	private void processFetchedIndex(FetchNanopubTask task) {
+		finishTask();
+		if (task.isCancelled()) return;
+		if (checkpoint != null && checkpoint.isTraversed(task.getNanopubUri())) return;
+		try {
+			Nanopub np = task.getNanopub();
+			if (!IndexUtils.isIndex(np)) {
+				throw new RuntimeException("NOT AN INDEX: " + np.getUri());
 			}
-			if (task.getLastServerUrl() != null) {
-				serverLoad.get(task.getLastServerUrl()).remove(task);
+			NanopubIndex npi = IndexUtils.castToIndex(np);
+			if (writeIndex) {
+				writeNanopub(npi);
 			}
-			if (task.getNanopub() == null) {
-				if (task.getTriedServersCount() == servers.size()) {
-					System.err.println("Failed to get " + task.getNanopubUri());
-					fetchTasks.remove(task);
-					continue;
-				}
-				if (localServerInfo != null && !task.hasServerBeenTried(localServerInfo.getPublicUrl())) {
-					assignTask(task, localServerInfo.getPublicUrl());
-					break;
-				}
-				List<ServerInfo> shuffledServers = new ArrayList<>(servers);
-				Collections.shuffle(shuffledServers);
-				for (ServerInfo serverInfo : shuffledServers) {
-					String serverUrl = serverInfo.getPublicUrl();
-					if (task.hasServerBeenTried(serverUrl)) continue;
-					if (!serverPatterns.get(serverUrl).matchesUri(task.getNanopubUri())) {
-						task.ignoreServer(serverUrl);
-						continue;
-					}
-					int load = serverLoad.get(serverUrl).size();
-					if (load >= maxParallelRequestsPerServer) {
-						continue;
+			if (writeContent) {
+				for (IRI elementUri : npi.getElements()) {
+					String uri = elementUri.toString();
+					if (checkpoint != null) {
+						if (checkpoint.isWritten(TrustyUriUtils.getArtifactCode(uri))) continue;
+						checkpoint.elementFound(uri);
 					}
-					assignTask(task, serverUrl);
-					break;
-				}
-			} else if (task.isIndex()) {
-				if (fetchTasks.size() < 3000) {
-					try {
-						Nanopub np = task.getNanopub();
-						if (!IndexUtils.isIndex(np)) {
-							throw new RuntimeException("NOT AN INDEX: " + np.getUri());
-						}
-						NanopubIndex npi = IndexUtils.castToIndex(np);
-						if (writeIndex) {
-							writeNanopub(npi);
-						}
-						if (writeContent) {
-							for (IRI elementUri : npi.getElements()) {
-								fetchTasks.add(new FetchNanopubTask(elementUri.toString(), false));
-							}
-						}
-						for (IRI subIndexUri : npi.getSubIndexes()) {
-							// Failing to get subindexes can block the entire process, therefore
-							// we launch three sibling tasks at the same time:
-							FetchNanopubTask t1 = new FetchNanopubTask(subIndexUri.toString(), true);
-							fetchTasks.add(0, t1);
-							FetchNanopubTask t2 = new FetchNanopubTask(subIndexUri.toString(), true, t1);
-							fetchTasks.add(0, t2);
-							FetchNanopubTask t3 = new FetchNanopubTask(subIndexUri.toString(), true, t1, t2);
-							fetchTasks.add(0, t3);
-						}
-						if (npi.getAppendedIndex() != null) {
-							// Failing to get appended indexes can block the entire process, therefore
-							// we launch three sibling tasks at the same time:
-							FetchNanopubTask t1 = new FetchNanopubTask(npi.getAppendedIndex().toString(), true);
-							fetchTasks.add(0, t1);
-							FetchNanopubTask t2 = new FetchNanopubTask(npi.getAppendedIndex().toString(), true, t1);
-							fetchTasks.add(0, t2);
-							FetchNanopubTask t3 = new FetchNanopubTask(npi.getAppendedIndex().toString(), true, t1, t2);
-							fetchTasks.add(0, t3);
-						}
-					} catch (Exception ex) {
-						throw new RuntimeException(ex);
-					}
-					fetchTasks.remove(task);
+					addContentTask(uri);
 				}
+			}
+			for (IRI subIndexUri : npi.getSubIndexes()) {
+				if (checkpoint != null) checkpoint.indexFound(subIndexUri.toString());
+				addIndexTasks(subIndexUri.toString());
+			}
+			if (npi.getAppendedIndex() != null) {
+				if (checkpoint != null) checkpoint.indexFound(npi.getAppendedIndex().toString());
+				addIndexTasks(npi.getAppendedIndex().toString());
+			}
+			if (checkpoint != null) checkpoint.indexTraversed(task.getNanopubUri());
+		} catch (Exception ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Hands waiting tasks over to the thread pool, in their order, until no server has capacity
+	 * left. Tasks that cannot be assigned at the moment (because all servers they could go to are
+	 * busy) keep their position. Tasks that can only go to servers taken out by the circuit
+	 * breaker are parked until one of these servers accepts requests again.
+	 */
+	private void assignTasks() {
+		Set<String> blockedServers = getCircuitBlockedServers();
+		if (!blockedServers.containsAll(circuitBlockedServers)) {
+			unparkTasks();
+		}
+		assignTasks(waitingIndexTasks);
+		assignTasks(waitingContentTasks);
+		circuitBlockedServers = getCircuitBlockedServers();
+	}
+
+	private void removeCancelledParkedTasks() {
+		Iterator<FetchNanopubTask> it = parkedTasks.iterator();
+		while (it.hasNext()) {
+			if (it.next().isCancelled()) {
+				it.remove();
+				finishTask();
+			}
+		}
+	}
+
+	private void unparkTasks() {
+		while (!parkedTasks.isEmpty()) {
+			FetchNanopubTask task = parkedTasks.removeLast();
+			if (task.isIndex()) {
+				waitingIndexTasks.addFirst(task);
 			} else {
-				try {
-					writeNanopub(task.getNanopub());
-				} catch (Exception ex) {
-					throw new RuntimeException(ex);
+				waitingContentTasks.addFirst(task);
+			}
+		}
+	}
+
+	private void assignTasks(Deque<FetchNanopubTask> waitingTasks) {
+		Deque<FetchNanopubTask> skippedTasks = new ArrayDeque<>();
+		// Only look that far ahead, so a server without matching tasks doesn't cause a full scan:
+		while (!waitingTasks.isEmpty() && skippedTasks.size() < maxSkippedTasks && hasFreeServer()) {
+			FetchNanopubTask task = waitingTasks.removeFirst();
+			if (task.isCancelled()) {
+				finishTask();
+				continue;
+			}
+			String serverUrl = selectServer(task);
+			if (serverUrl == null) {
+				if (task.getTriedServersCount() == servers.size()) {
+					System.err.println("Failed to get " + task.getNanopubUri());
+					finishTask();
+				} else if (isWaitingForCircuitOnly(task)) {
+					// Doesn't count towards the look-ahead, as these tasks can't block other ones:
+					parkedTasks.addLast(task);
+				} else {
+					skippedTasks.addLast(task);
 				}
-				fetchTasks.remove(task);
+				continue;
 			}
+			assignTask(task, serverUrl);
+		}
+		while (!skippedTasks.isEmpty()) {
+			waitingTasks.addFirst(skippedTasks.removeLast());
+		}
+	}
+
+	private boolean hasFreeServer() {
+		for (ServerStats stats : serverStats.values()) {
+			if (stats.hasCapacity()) return true;
 		}
+		return false;
 	}
 
-	private void writeNanopub(Nanopub np) throws RDFHandlerException {
+	private boolean isCircuitBlocked(ServerStats stats) {
+		return stats.isCircuitOpen() && !stats.hasCapacity();
+	}
+
+	private Set<String> getCircuitBlockedServers() {
+		Set<String> blockedServers = new HashSet<>();
+		for (Map.Entry<String,ServerStats> e : serverStats.entrySet()) {
+			if (isCircuitBlocked(e.getValue())) blockedServers.add(e.getKey());
+		}
+		return blockedServers;
+	}
+
+	private boolean isWaitingForCircuitOnly(FetchNanopubTask task) {
+		for (ServerInfo serverInfo : servers) {
+			String serverUrl = serverInfo.getPublicUrl();
+			if (task.hasServerBeenTried(serverUrl)) continue;
+			if (!isCircuitBlocked(serverStats.get(serverUrl))) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of milliseconds until the next server that is taken out by the circuit
+	 * breaker accepts a request again, or -1 if there is no such server waiting.
+	 */
+	private long getMillisUntilServerAvailable() {
+		long millis = -1;
+		for (ServerStats stats : serverStats.values()) {
+			if (!isCircuitBlocked(stats)) continue;
+			long m = stats.getMillisUntilAvailable();
+			if (m > 0 && (millis < 0 || m < millis)) millis = m;
+		}
+		return millis;
+	}
+
+	/**
+	 * Returns the local server if it hasn't been tried yet, or otherwise one of the servers that
+	 * haven't been tried and have capacity, picked at random with the probabilities proportional
+	 * to their weights. Returns null if there is no such server at the moment.
+	 */
+	private String selectServer(FetchNanopubTask task) {
+		if (localServerInfo != null && !task.hasServerBeenTried(localServerInfo.getPublicUrl())) {
+			String localUrl = localServerInfo.getPublicUrl();
+			ServerStats localStats = serverStats.get(localUrl);
+			if (localStats.hasCapacity()) return localUrl;
+			if (!localStats.isCircuitOpen()) return null;
+			// Don't wait for the local server when it is failing:
+			task.ignoreServer(localUrl);
+		}
+		String selected = null;
+		double weightSum = 0;
+		for (ServerInfo serverInfo : servers) {
+			String serverUrl = serverInfo.getPublicUrl();
+			if (task.hasServerBeenTried(serverUrl)) continue;
+			if (!serverPatterns.get(serverUrl).matchesUri(task.getNanopubUri())) {
+				task.ignoreServer(serverUrl);
+				continue;
+			}
+			ServerStats stats = serverStats.get(serverUrl);
+			if (!stats.hasCapacity()) continue;
+			// Weighted reservoir sampling over the candidate servers:
+			double weight = stats.getWeight();
+			weightSum += weight;
+			if (random.nextDouble() * weightSum < weight) selected = serverUrl;
+		}
+		return selected;
+	}
+
+	private void writeNanopub(Nanopub np) throws RDFHandlerException, IOException {
+		String artifactCode = null;
+		if (checkpoint != null) {
+			artifactCode = TrustyUriUtils.getArtifactCode(np.getUri().toString());
+			if (checkpoint.isWritten(artifactCode)) return;
+		}
 		nanopubCount++;
 		if (listener != null && nanopubCount % 100 == 0) {
 			listener.progress(nanopubCount);
 		}
-		NanopubUtils.writeToStream(np, out, format);
+		writer.write(np);
+		if (checkpoint != null) checkpoint.nanopubWritten(artifactCode);
 	}
 
 	public int getNanopubCount() {
 		return nanopubCount;
 	}
 
+	/**
+	 * Returns the number of tasks that are not finished yet. This is limited by maxPendingTasks,
+	 * plus the elements of one index. Only to be called from the thread that runs the fetching.
+	 */
+	int getTaskCount() {
+		return taskCount;
+	}
+
 	public List<ServerInfo> getServers() {
 		return new ArrayList<>(servers);
 	}
 
 	public int getServerUsage(ServerInfo si) {
-		return serverUsage.get(si.getPublicUrl());
+		return serverStats.get(si.getPublicUrl()).getUsage();
 	}
 
 	public void setProgressListener(Listener l) {
 		listener = l;
 	}
 
+	/**
+	 * Requests the nanopub from the server. This is called from the thread pool.
+	 */
+	Nanopub fetchNanopub(String artifactCode, String serverUrl) throws Exception {
+		return GetNanopub.get(artifactCode, serverUrl, httpClient, parserConfig);
+	}
+
 	private void assignTask(final FetchNanopubTask task, final String serverUrl) {
-		task.prepareForTryingServer(serverUrl);
-		serverLoad.get(serverUrl).add(task);
-		Runnable runFetchTask = new Runnable() {
+		boolean trial = serverStats.get(serverUrl).requestStarted();
+		task.prepareForTryingServer(serverUrl, trial);
+		runningCount++;
+		executor.execute(new Runnable() {
 
 			@Override
 			public void run() {
-				task.tryServer(serverUrl);
+				try {
+					task.tryServer(serverUrl);
+				} finally {
+					completedTasks.add(task);
+				}
 			}
 
-		};
-		Thread thread = new Thread(runFetchTask);
-		thread.start();
+		});
 	}
 
+	// Apart from tryServer, which runs in the thread pool, the methods of this class are only
+	// called from the thread that runs the fetching:
 	private class FetchNanopubTask {
 
 		private String npUri;
 		private boolean isIndex;
-		private Nanopub nanopub;
+		private volatile Nanopub nanopub;
 		private Set<String> servers = new HashSet<>();
-		private boolean running = false;
 		private boolean cancelled = false;
 		private String lastServerUrl;
+		// Whether the request to the last server is the trial request of its circuit breaker:
+		private boolean trial;
+		private volatile int result;
+		private volatile long latency;
 		private Set<FetchNanopubTask> siblings;
 
 		public FetchNanopubTask(String npUri, boolean isIndex, FetchNanopubTask... siblings) {
@@ -259,18 +632,26 @@ public class FetchIndex {
 			return nanopub;
 		}
 
-		public String getNanopubUri() {
-			return npUri;
+		public void setNanopub(Nanopub nanopub) {
+			this.nanopub = nanopub;
 		}
 
-		public boolean isRunning() {
-			return running;
+		public String getNanopubUri() {
+			return npUri;
 		}
 
 		public boolean isCancelled() {
 			return cancelled;
 		}
 
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public Set<FetchNanopubTask> getSiblings() {
+			return siblings;
+		}
+
 		public boolean hasServerBeenTried(String serverUrl) {
 			return servers.contains(serverUrl);
 		}
@@ -283,40 +664,49 @@ public class FetchIndex {
 			return lastServerUrl;
 		}
 
+		public boolean isTrial() {
+			return trial;
+		}
+
+		public int getResult() {
+			return result;
+		}
+
+		public long getLatency() {
+			return latency;
+		}
+
 		public void ignoreServer(String serverUrl) {
 			servers.add(serverUrl);
 		}
 
-		public void prepareForTryingServer(String serverUrl) {
+		public void prepareForTryingServer(String serverUrl, boolean trial) {
 			servers.add(serverUrl);
 			lastServerUrl = serverUrl;
-			running = true;
+			this.trial = trial;
+			result = RESULT_ABORTED;
 		}
 
 		public void tryServer(String serverUrl) {
-			boolean serverTried = false;
+			long startTime = System.currentTimeMillis();
 			try {
-				serverTried = true;
-				nanopub = GetNanopub.get(TrustyUriUtils.getArtifactCode(npUri), serverUrl, httpClient);
+				nanopub = fetchNanopub(TrustyUriUtils.getArtifactCode(npUri), serverUrl);
+				result = RESULT_OK;
 			} catch (ConnectionPoolTimeoutException ex) {
-				serverTried = false;
+				result = RESULT_ABORTED;
 				// too many connection attempts; try again later
 			} catch (Exception ex) {
+				if (ex instanceof HttpResponseException && ((HttpResponseException) ex).getStatusCode() < 500) {
+					// The server is fine, but doesn't have the nanopub
+					result = RESULT_OK;
+				} else if (ex instanceof SocketTimeoutException || ex instanceof ConnectTimeoutException) {
+					result = RESULT_TIMEOUT;
+				} else {
+					result = RESULT_ERROR;
+				}
 				if (listener != null) listener.exceptionHappened(ex, serverUrl, TrustyUriUtils.getArtifactCode(npUri));
 			} finally {
-				running = false;
-				if (serverTried) {
-					synchronized (FetchIndex.class) {
-						if (cancelled == true) {
-							// Sibling already did the work...
-						} else {
-							for (FetchNanopubTask s : siblings) {
-								s.cancelled = true;
-							}
-							serverUsage.put(serverUrl, serverUsage.get(serverUrl) + 1);
-						}
-					}
-				}
+				latency = System.currentTimeMillis() - startTime;
 			}
 		}
 
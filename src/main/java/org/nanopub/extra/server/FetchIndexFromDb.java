@@ -1,33 +1,40 @@
 package org.nanopub.extra.server;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
 
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.nanopub.MalformedNanopubException;
 import org.nanopub.Nanopub;
-import org.nanopub.NanopubUtils;
+import org.nanopub.NanopubWriter;
 import org.nanopub.extra.index.IndexUtils;
 import org.nanopub.extra.index.NanopubIndex;
 
+import net.trustyuri.TrustyUriUtils;
+
 public class FetchIndexFromDb extends FetchIndex {
 
 	public static final int maxParallelRequestsPerServer = 5;
 
 	private String indexUri;
 	private NanopubDb db;
-	private OutputStream out;
-	private RDFFormat format;
+	private NanopubWriter writer;
 	private boolean writeIndex, writeContent;
 	private int nanopubCount;
 	private FetchIndex.Listener listener;
+	private FetchCheckpoint checkpoint;
 
 	public FetchIndexFromDb(String indexUri, NanopubDb db, OutputStream out, RDFFormat format, boolean writeIndex, boolean writeContent) {
+		this(indexUri, db, new NanopubWriter(out, format), writeIndex, writeContent);
+	}
+
+	public FetchIndexFromDb(String indexUri, NanopubDb db, NanopubWriter writer, boolean writeIndex, boolean writeContent) {
 		this.indexUri = indexUri;
 		this.db = db;
-		this.out = out;
-		this.format = format;
+		this.writer = writer;
 		this.writeIndex = writeIndex;
 		this.writeContent = writeContent;
 		nanopubCount = 0;
@@ -35,20 +42,60 @@ public class FetchIndexFromDb extends FetchIndex {
 
 	public void run() {
 		try {
-			getIndex(indexUri);
-		} catch (RDFHandlerException | MalformedNanopubException ex) {
+			if (checkpoint == null) {
+				getIndex(indexUri);
+			} else {
+				checkpoint.setOutput(writer);
+				for (String uri : checkpoint.takePendingElementUris()) {
+					writeNanopub(GetNanopub.get(uri, db));
+				}
+				List<String> pendingIndexUris = checkpoint.takePendingIndexUris();
+				for (String uri : pendingIndexUris) {
+					getIndex(uri);
+				}
+				if (!checkpoint.isTraversed(indexUri) && !pendingIndexUris.contains(indexUri)) {
+					checkpoint.indexFound(indexUri);
+					getIndex(indexUri);
+				}
+			}
+			writer.flush();
+			if (checkpoint != null) checkpoint.flush();
+		} catch (IOException | RDFHandlerException | MalformedNanopubException ex) {
 			throw new RuntimeException(ex);
 		}
 	}
 
-	private void getIndex(String indexUri) throws RDFHandlerException, MalformedNanopubException {
-		NanopubIndex npi = getIndex(indexUri, db);
-		while (npi != null) {
+	@Override
+	public void setCheckpoint(FetchCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	private void getIndex(String indexUri) throws RDFHandlerException, MalformedNanopubException, IOException {
+		String uri = indexUri;
+		while (uri != null) {
+			if (checkpoint != null && checkpoint.isTraversed(uri)) return;
+			NanopubIndex npi = getIndex(uri, db);
 			if (writeIndex) {
 				writeNanopub(npi);
 			}
+			if (checkpoint != null) {
+				if (writeContent) {
+					for (IRI elementUri : npi.getElements()) {
+						if (checkpoint.isWritten(TrustyUriUtils.getArtifactCode(elementUri.toString()))) continue;
+						checkpoint.elementFound(elementUri.toString());
+					}
+				}
+				for (IRI subIndexUri : npi.getSubIndexes()) {
+					checkpoint.indexFound(subIndexUri.toString());
+				}
+				if (npi.getAppendedIndex() != null) {
+					checkpoint.indexFound(npi.getAppendedIndex().toString());
+				}
+				checkpoint.indexTraversed(uri);
+			}
 			if (writeContent) {
 				for (IRI elementUri : npi.getElements()) {
+					if (checkpoint != null && checkpoint.isWritten(TrustyUriUtils.getArtifactCode(elementUri.toString()))) continue;
 					writeNanopub(GetNanopub.get(elementUri.toString(), db));
 				}
 			}
@@ -56,9 +103,9 @@ public class FetchIndexFromDb extends FetchIndex {
 				getIndex(subIndexUri.toString());
 			}
 			if (npi.getAppendedIndex() != null) {
-				npi = getIndex(npi.getAppendedIndex().toString(), db);
+				uri = npi.getAppendedIndex().toString();
 			} else {
-				npi = null;
+				uri = null;
 			}
 		}
 	}
@@ -71,12 +118,18 @@ public class FetchIndexFromDb extends FetchIndex {
 		return IndexUtils.castToIndex(np);
 	}
 
-	private void writeNanopub(Nanopub np) throws RDFHandlerException {
+	private void writeNanopub(Nanopub np) throws RDFHandlerException, IOException {
+		String artifactCode = null;
+		if (checkpoint != null) {
+			artifactCode = TrustyUriUtils.getArtifactCode(np.getUri().toString());
+			if (checkpoint.isWritten(artifactCode)) return;
+		}
 		nanopubCount++;
 		if (listener != null && nanopubCount % 100 == 0) {
 			listener.progress(nanopubCount);
 		}
-		NanopubUtils.writeToStream(np, out, format);
+		writer.write(np);
+		if (checkpoint != null) checkpoint.nanopubWritten(artifactCode);
 	}
 
 	public int getNanopubCount() {
@@ -14,21 +14,22 @@ import java.util.zip.GZIPOutputStream;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.config.CookieSpecs;
-import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 import org.eclipse.rdf4j.RDF4JException;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.rio.ParserConfig;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.eclipse.rdf4j.rio.Rio;
+import org.nanopub.HttpTransport;
 import org.nanopub.MalformedNanopubException;
 import org.nanopub.Nanopub;
 import org.nanopub.NanopubImpl;
-import org.nanopub.NanopubUtils;
+import org.nanopub.NanopubParserSettings;
+import org.nanopub.NanopubWriter;
 import org.nanopub.trusty.TrustyNanopubUtils;
 
 import com.beust.jcommander.JCommander;
@@ -82,6 +83,18 @@ public class GetNanopub {
 			description = "Simulate an unreliable connection for testing purposes")
 	private boolean simUnrelConn;
 
+	@com.beust.jcommander.Parameter(names = "--local-cache", description = "Directory for keeping retrieved nanopubs, so they are not downloaded again (use 'default' for ~/.nanopub/cache)")
+	private String localCacheDir;
+
+	@com.beust.jcommander.Parameter(names = "--local-cache-size", description = "Maximum size of the local cache in megabytes")
+	private long localCacheSize = NanopubCache.defaultMaxSize / (1024 * 1024);
+
+	@com.beust.jcommander.Parameter(names = "--local-cache-verify", description = "Check the trusty URIs of nanopubs read from the local cache again")
+	private boolean localCacheVerify = false;
+
+	@com.beust.jcommander.Parameter(names = "--checkpoint", description = "File for recording the progress of -i/-c, so an interrupted run can be resumed (needs an uncompressed output file, which is then cut back to the last checkpoint and appended to)")
+	private File checkpointFile;
+
 	public static void main(String[] args) {
 		NanopubImpl.ensureLoaded();
 		GetNanopub obj = new GetNanopub();
@@ -102,6 +115,19 @@ public class GetNanopub {
 	}
 
 	private static boolean simulateUnreliableConnection = false;
+	private static NanopubCache nanopubCache = null;
+
+	/**
+	 * Sets a local cache for retrieved nanopubs, or null for none. Nanopubs found in the cache are
+	 * not retrieved again, and nanopubs retrieved from a server are added to the cache.
+	 */
+	public static void setNanopubCache(NanopubCache nanopubCache) {
+		GetNanopub.nanopubCache = nanopubCache;
+	}
+
+	public static NanopubCache getNanopubCache() {
+		return nanopubCache;
+	}
 
 	public static Nanopub get(String uriOrArtifactCode) {
 		ServerIterator serverIterator = new ServerIterator();
@@ -109,6 +135,11 @@ public class GetNanopub {
 		if (!ac.startsWith(RdfModule.MODULE_ID)) {
 			throw new IllegalArgumentException("Not a trusty URI of type RA");
 		}
+		NanopubCache npCache = nanopubCache;
+		if (npCache != null) {
+			Nanopub np = npCache.get(ac);
+			if (np != null) return np;
+		}
 		while (serverIterator.hasNext()) {
 			ServerInfo serverInfo = serverIterator.next();
 			try {
@@ -142,15 +173,20 @@ public class GetNanopub {
 
 	public static Nanopub get(String artifactCode, String serverUrl)
 			throws IOException, RDF4JException, MalformedNanopubException {
-		RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(1000)
-				.setConnectionRequestTimeout(100).setSocketTimeout(1000)
-				.setCookieSpec(CookieSpecs.STANDARD).build();
-		HttpClient c = HttpClientBuilder.create().setDefaultRequestConfig(requestConfig).build();
-		return get(artifactCode, serverUrl, c);
+		return get(artifactCode, serverUrl, HttpTransport.getServerHttpClient());
 	}
 
 	public static Nanopub get(String artifactCode, String serverUrl, HttpClient httpClient)
 			throws IOException, RDF4JException, MalformedNanopubException {
+		return get(artifactCode, serverUrl, httpClient, null);
+	}
+
+	/**
+	 * Retrieves the nanopub from the given server and parses it with the given config (see
+	 * NanopubParserSettings), which can be null.
+	 */
+	public static Nanopub get(String artifactCode, String serverUrl, HttpClient httpClient, ParserConfig config)
+			throws IOException, RDF4JException, MalformedNanopubException {
 		HttpGet get = new HttpGet(serverUrl + artifactCode);
 		get.setHeader("Accept", "application/trig");
 		InputStream in = null;
@@ -158,16 +194,27 @@ public class GetNanopub {
 			HttpResponse resp = httpClient.execute(get);
 			if (!wasSuccessful(resp)) {
 				EntityUtils.consumeQuietly(resp.getEntity());
-				throw new IOException(resp.getStatusLine().toString());
+				throw new HttpResponseException(resp.getStatusLine().getStatusCode(), resp.getStatusLine().toString());
 			}
 			in = resp.getEntity().getContent();
 			if (simulateUnreliableConnection) {
 				in = new UnreliableInputStream(in);
 			}
-			Nanopub nanopub = new NanopubImpl(in, RDFFormat.TRIG);
+			Nanopub nanopub;
+			if (config == null) {
+				nanopub = new NanopubImpl(in, RDFFormat.TRIG);
+			} else {
+				nanopub = new NanopubImpl(in, RDFFormat.TRIG, config);
+			}
 			if (!TrustyNanopubUtils.isValidTrustyNanopub(nanopub)) {
 				throw new MalformedNanopubException("Nanopub is not trusty");
 			}
+			// The local cache does not check nanopubs again by default, so only nanopubs that have
+			// just been checked here are added:
+			NanopubCache npCache = nanopubCache;
+			if (npCache != null && artifactCode.equals(TrustyUriUtils.getArtifactCode(nanopub.getUri().toString()))) {
+				npCache.put(nanopub);
+			}
 			return nanopub;
 		} finally {
 			if (in != null) in.close();
@@ -190,10 +237,12 @@ public class GetNanopub {
 	}
 
 	private OutputStream outputStream = System.out;
+	private NanopubWriter writer;
 	private PrintStream errorStream = null;
 	private int count;
 	private List<Exception> exceptions;
 	private NanopubDb db = null;
+	private FetchCheckpoint checkpoint = null;
 
 	private RDFFormat rdfFormat;
 
@@ -204,6 +253,23 @@ public class GetNanopub {
 		if (showReport) {
 			exceptions = new ArrayList<>();
 		}
+		boolean append = false;
+		if (checkpointFile != null && (getIndex || getIndexContent)) {
+			// Resuming needs an output file that can be cut back to the last checkpoint and appended to:
+			if (outputFile == null || outputFile.getName().endsWith(".gz")) {
+				throw new IllegalArgumentException("Checkpoints need an uncompressed output file (-o)");
+			}
+			if (Rio.getParserFormatForFileName(outputFile.getName()).orElse(RDFFormat.TRIG).equals(RDFFormat.TRIX)) {
+				throw new IllegalArgumentException("Checkpoints are not supported for TriX output");
+			}
+			checkpoint = new FetchCheckpoint(checkpointFile, outputFile);
+			if (checkpoint.isResumed()) {
+				// The nanopubs that are not recorded as written are removed from the output of the
+				// interrupted run, and the remaining ones are appended:
+				checkpoint.truncateOutputFile();
+				append = true;
+			}
+		}
 		if (outputFile == null) {
 			if (format == null) {
 				format = "trig";
@@ -212,14 +278,20 @@ public class GetNanopub {
 		} else {
 			rdfFormat = Rio.getParserFormatForFileName(outputFile.getName()).orElse(RDFFormat.TRIG);
 			if (outputFile.getName().endsWith(".gz")) {
-				outputStream = new GZIPOutputStream(new FileOutputStream(outputFile));
+				outputStream = new GZIPOutputStream(new FileOutputStream(outputFile, append));
 			} else {
-				outputStream = new FileOutputStream(outputFile);
+				outputStream = new FileOutputStream(outputFile, append);
 			}
 		}
+		writer = new NanopubWriter(outputStream, rdfFormat);
 		if (errorFile != null) {
 			errorStream = new PrintStream(errorFile);
 		}
+		if (localCacheDir != null) {
+			File dir = (localCacheDir.equals("default") ? NanopubCache.getDefaultDirectory() : new File(localCacheDir));
+			nanopubCache = new NanopubCache(dir, localCacheSize * 1024 * 1024);
+			nanopubCache.setVerifyOnRead(localCacheVerify);
+		}
 		if (mongoDbHost != null) {
 			db = new NanopubDb(mongoDbHost, mongoDbPort, mongoDbName, mongoDbUsername, mongoDbPassword);
 		}
@@ -227,9 +299,18 @@ public class GetNanopub {
 		for (String nanopubId : nanopubIds) {
 			if (getIndex || getIndexContent) {
 				if (db == null) {
-					fetchIndex = new FetchIndex(nanopubId, outputStream, rdfFormat, getIndex, getIndexContent, localServer);
+					fetchIndex = new FetchIndex(nanopubId, writer, getIndex, getIndexContent, localServer);
 				} else {
-					fetchIndex = new FetchIndexFromDb(nanopubId, db, outputStream, rdfFormat, getIndex, getIndexContent);
+					fetchIndex = new FetchIndexFromDb(nanopubId, db, writer, getIndex, getIndexContent);
+				}
+				if (checkpoint != null) {
+					fetchIndex.setCheckpoint(checkpoint);
+				}
+				if (getIndexContent) {
+					// Index content can consist of very many nanopubs with largely the same terms:
+					ParserConfig parserConfig = new ParserConfig();
+					parserConfig.set(NanopubParserSettings.INTERN_VALUES, true);
+					fetchIndex.setParserConfig(parserConfig);
 				}
 				fetchIndex.setProgressListener(new FetchIndex.Listener() {
 
@@ -263,12 +344,20 @@ public class GetNanopub {
 			}
 		}
 		if (outputStream != System.out) {
-			outputStream.close();
+			writer.close();
 			System.err.println(count + " nanopubs retrieved and saved in " + outputFile);
+		} else {
+			writer.finish();
 		}
 		if (errorStream != null) {
 			errorStream.close();
 		}
+		if (checkpoint != null) {
+			// Everything has been fetched, so there is nothing left to resume:
+			checkpoint.delete();
+			checkpoint = null;
+		}
+		nanopubCache = null;
 		if (showReport && fetchIndex != null) {
 			System.err.println("Number of retries: " + exceptions.size());
 			System.err.println("Used servers:");
@@ -296,10 +385,11 @@ public class GetNanopub {
 		}
 		count++;
 		if (outputStream == System.out) {
-			NanopubUtils.writeToStream(np, System.out, rdfFormat);
-			System.out.print("\n\n");
+			writer.write(np);
+			writer.writeText("\n\n");
+			writer.flush();
 		} else {
-			NanopubUtils.writeToStream(np, outputStream, rdfFormat);
+			writer.write(np);
 			if (count % 100 == 0) {
 				System.err.print(count + " nanopubs...\r");
 			}
@@ -0,0 +1,228 @@
+package org.nanopub.extra.server;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.rdf4j.RDF4JException;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.nanopub.MalformedNanopubException;
+import org.nanopub.Nanopub;
+import org.nanopub.NanopubImpl;
+import org.nanopub.NanopubUtils;
+import org.nanopub.trusty.TrustyNanopubUtils;
+
+import net.trustyuri.TrustyUriUtils;
+
+/**
+ * Keeps retrieved nanopubs in a local directory, so they don't have to be downloaded again. As
+ * trusty nanopubs cannot change, entries never become outdated. The nanopubs are stored in TriG
+ * files named by their artifact code, in subdirectories made from the first characters of the
+ * artifact code (as in the tar files created by the "tar" operation).
+ *
+ * The total size of the files is kept below a limit by removing the least recently used ones. The
+ * order of use is kept in the modification times of the files, so it is preserved across runs.
+ *
+ * By default, nanopubs read from the cache are not checked again. This can be switched on to
+ * protect against changes to the files on disk.
+ */
+public class NanopubCache {
+
+	public static final long defaultMaxSize = 1024L * 1024 * 1024;
+
+	public static File getDefaultDirectory() {
+		return new File(System.getProperty("user.home") + "/.nanopub/cache");
+	}
+
+	private final File directory;
+	private final long maxSize;
+	private boolean verifyOnRead = false;
+
+	// Artifact codes and file sizes, with the least recently used ones first:
+	private final LinkedHashMap<String,Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalSize = 0;
+
+	public NanopubCache() {
+		this(getDefaultDirectory(), defaultMaxSize);
+	}
+
+	/**
+	 * Opens the cache in the given directory, which is created if it doesn't exist. If the files
+	 * in the directory have more than the given number of bytes, the least recently used ones are
+	 * removed.
+	 */
+	public NanopubCache(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		directory.mkdirs();
+		loadEntries();
+		evict();
+	}
+
+	private void loadEntries() {
+		final List<File> files = new ArrayList<>();
+		collectFiles(directory, files);
+		final Map<File,Long> modified = new LinkedHashMap<>();
+		for (File f : files) {
+			modified.put(f, f.lastModified());
+		}
+		Collections.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(modified.get(f1), modified.get(f2));
+			}
+		});
+		for (File f : files) {
+			String artifactCode = getArtifactCode(f);
+			if (artifactCode == null) continue;
+			long size = f.length();
+			entries.put(artifactCode, size);
+			totalSize += size;
+		}
+	}
+
+	private static void collectFiles(File dir, List<File> files) {
+		File[] children = dir.listFiles();
+		if (children == null) return;
+		for (File f : children) {
+			if (f.isDirectory()) {
+				collectFiles(f, files);
+			} else if (!f.getName().endsWith(".tmp")) {
+				files.add(f);
+			}
+		}
+	}
+
+	private String getArtifactCode(File f) {
+		String path = directory.toURI().relativize(f.toURI()).getPath();
+		String artifactCode = path.replaceFirst("^(..)/(..)/(..)/", "$1$2$3");
+		if (!TrustyUriUtils.isPotentialArtifactCode(artifactCode)) return null;
+		return artifactCode;
+	}
+
+	private File getFile(String artifactCode) {
+		return new File(directory, artifactCode.replaceFirst("^(..)(..)(..)", "$1/$2/$3/"));
+	}
+
+	/**
+	 * Sets whether nanopubs read from the cache are checked again to have a valid trusty URI.
+	 */
+	public void setVerifyOnRead(boolean verifyOnRead) {
+		this.verifyOnRead = verifyOnRead;
+	}
+
+	public boolean isVerifyOnRead() {
+		return verifyOnRead;
+	}
+
+	/**
+	 * Returns the nanopub with the given artifact code, or null if it is not in the cache.
+	 */
+	public Nanopub get(String artifactCode) {
+		if (artifactCode == null || !TrustyUriUtils.isPotentialArtifactCode(artifactCode)) return null;
+		synchronized (this) {
+			if (entries.get(artifactCode) == null) return null;
+		}
+		File file = getFile(artifactCode);
+		Nanopub np;
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				np = new NanopubImpl(in, RDFFormat.TRIG);
+			} finally {
+				in.close();
+			}
+		} catch (IOException | RDF4JException | MalformedNanopubException ex) {
+			remove(artifactCode);
+			return null;
+		}
+		if (!artifactCode.equals(TrustyUriUtils.getArtifactCode(np.getUri().toString())) ||
+				(verifyOnRead && !TrustyNanopubUtils.isValidTrustyNanopub(np))) {
+			remove(artifactCode);
+			return null;
+		}
+		file.setLastModified(System.currentTimeMillis());
+		return np;
+	}
+
+	public boolean contains(String artifactCode) {
+		synchronized (this) {
+			return entries.containsKey(artifactCode);
+		}
+	}
+
+	/**
+	 * Adds the given nanopub to the cache. This must only be done right after the trusty URI of the
+	 * nanopub has been checked, as nanopubs read from the cache are not checked again by default.
+	 */
+	public void put(Nanopub np) {
+		String artifactCode = TrustyUriUtils.getArtifactCode(np.getUri().toString());
+		if (artifactCode == null || !TrustyUriUtils.isPotentialArtifactCode(artifactCode)) return;
+		if (contains(artifactCode)) return;
+		File file = getFile(artifactCode);
+		long size;
+		try {
+			file.getParentFile().mkdirs();
+			// Written to a temporary file first, so other processes never see incomplete files:
+			File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+			OutputStream out = new FileOutputStream(tempFile);
+			try {
+				NanopubUtils.writeToStream(np, out, RDFFormat.TRIG);
+			} finally {
+				out.close();
+			}
+			size = tempFile.length();
+			if (!tempFile.renameTo(file)) {
+				tempFile.delete();
+				return;
+			}
+		} catch (Exception ex) {
+			// The cache is only an optimization, so failures to write to it are ignored
+			return;
+		}
+		synchronized (this) {
+			Long oldSize = entries.put(artifactCode, size);
+			if (oldSize != null) totalSize -= oldSize;
+			totalSize += size;
+			evict();
+		}
+	}
+
+	private synchronized void remove(String artifactCode) {
+		Long size = entries.remove(artifactCode);
+		if (size != null) totalSize -= size;
+		getFile(artifactCode).delete();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getTotalSize() {
+		return totalSize;
+	}
+
+	private synchronized void evict() {
+		if (totalSize <= maxSize) return;
+		// Remove a bit more than necessary, so this doesn't happen again right away:
+		long targetSize = maxSize - maxSize / 10;
+		Iterator<Map.Entry<String,Long>> iterator = entries.entrySet().iterator();
+		while (totalSize > targetSize && iterator.hasNext()) {
+			Map.Entry<String,Long> e = iterator.next();
+			getFile(e.getKey()).delete();
+			totalSize -= e.getValue();
+			iterator.remove();
+		}
+	}
+
+}
@@ -9,17 +9,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.config.CookieSpecs;
-import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.nanopub.HttpTransport;
 import org.nanopub.Nanopub;
 
 public class NanopubServerUtils {
@@ -28,7 +24,6 @@ public class NanopubServerUtils {
 	public static final String requiredProtocolVersion = "0.2";
 	public static final int requiredProtocolVersionValue = getVersionValue(requiredProtocolVersion);
 
-	private static HttpClient httpClient;
 
 	protected NanopubServerUtils() {
 		throw new RuntimeException("no instances allowed");
@@ -56,17 +51,7 @@ public class NanopubServerUtils {
 		get.setHeader("Content-Type", "text/plain");
 		BufferedReader r = null;
 		try {
-			if (httpClient == null) {
-				RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(2000)
-						.setConnectionRequestTimeout(100).setSocketTimeout(2000)
-						.setCookieSpec(CookieSpecs.STANDARD).build();
-				PoolingHttpClientConnectionManager connManager = new PoolingHttpClientConnectionManager();
-				connManager.setDefaultMaxPerRoute(10);
-				connManager.setMaxTotal(1000);
-				httpClient = HttpClientBuilder.create().setDefaultRequestConfig(requestConfig)
-						.setConnectionManager(connManager).build();
-			}
-			HttpResponse resp = httpClient.execute(get);
+			HttpResponse resp = HttpTransport.getServerHttpClient().execute(get);
 			int code = resp.getStatusLine().getStatusCode();
 			if (code < 200 || code > 299) {
 				EntityUtils.consumeQuietly(resp.getEntity());
@@ -1,5 +1,6 @@
 package org.nanopub.extra.server;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.List;
@@ -34,6 +35,14 @@ public class NanopubStatus {
 	@com.beust.jcommander.Parameter(names = "-a", description = "Check all servers (do not stop after the first successful one)")
 	private boolean checkAllServers = false;
 
+	// The status is about the servers, so nanopubs are never read from the local cache here, but
+	// the retrieved ones are added to it:
+	@com.beust.jcommander.Parameter(names = "--local-cache", description = "Directory for keeping retrieved nanopubs for later use (use 'default' for ~/.nanopub/cache)")
+	private String localCacheDir;
+
+	@com.beust.jcommander.Parameter(names = "--local-cache-size", description = "Maximum size of the local cache in megabytes")
+	private long localCacheSize = NanopubCache.defaultMaxSize / (1024 * 1024);
+
 	public static void main(String[] args) {
 		NanopubImpl.ensureLoaded();
 		NanopubStatus obj = new NanopubStatus();
@@ -79,6 +88,10 @@ public class NanopubStatus {
 	}
 
 	private void run() throws IOException, RDFHandlerException {
+		if (localCacheDir != null) {
+			File dir = (localCacheDir.equals("default") ? NanopubCache.getDefaultDirectory() : new File(localCacheDir));
+			GetNanopub.setNanopubCache(new NanopubCache(dir, localCacheSize * 1024 * 1024));
+		}
 		checkNanopub(nanopubIds.get(0), recursive);
 		if (recursive) {
 			System.out.print(indexNpCount + " index nanopub" + (indexNpCount!=1?"s":"") + "; ");
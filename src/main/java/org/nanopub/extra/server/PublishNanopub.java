@@ -8,16 +8,15 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.http.HttpResponse;
-import org.apache.http.client.config.CookieSpecs;
-import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
 import org.eclipse.rdf4j.RDF4JException;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.sparql.SPARQLRepository;
 import org.eclipse.rdf4j.rio.RDFFormat;
+import org.nanopub.HttpTransport;
 import org.nanopub.MalformedNanopubException;
 import org.nanopub.MultiNanopubRdfHandler;
 import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
@@ -181,8 +180,9 @@ public class PublishNanopub {
 				String nanopubString = NanopubUtils.writeToString(nanopub, RDFFormat.TRIG);
 				post.setEntity(new StringEntity(nanopubString, "UTF-8"));
 				post.setHeader("Content-Type", RDFFormat.TRIG.getDefaultMIMEType());
-				RequestConfig requestConfig = RequestConfig.custom().setCookieSpec(CookieSpecs.STANDARD).build();
-				HttpResponse response = HttpClientBuilder.create().setDefaultRequestConfig(requestConfig).build().execute(post);
+				HttpResponse response = HttpTransport.getHttpClient().execute(post);
+				// Read the response, so the connection can be reused:
+				EntityUtils.consumeQuietly(response.getEntity());
 				int code = response.getStatusLine().getStatusCode();
 				if (code >= 200 && code < 300) {
 					if (usedServers.containsKey(serverUrl)) {
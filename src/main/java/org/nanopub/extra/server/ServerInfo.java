@@ -6,11 +6,8 @@ import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.nio.charset.Charset;
 
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.config.CookieSpecs;
-import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.nanopub.HttpTransport;
 
 import com.google.gson.Gson;
 
@@ -38,11 +35,7 @@ public class ServerInfo implements Serializable {
 		ServerInfo si = null;
 		InputStream in = null;
 		try {
-			RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(1000)
-					.setConnectionRequestTimeout(100).setSocketTimeout(1000)
-					.setCookieSpec(CookieSpecs.STANDARD).build();
-			HttpClient c = HttpClientBuilder.create().setDefaultRequestConfig(requestConfig).build();
-		    in = c.execute(get).getEntity().getContent();
+			in = HttpTransport.getServerHttpClient().execute(get).getEntity().getContent();
 			si = new Gson().fromJson(new InputStreamReader(in, Charset.forName("UTF-8")), serverInfoClass);
 		} catch (Exception ex) {
 			throw new ServerInfoException(serverUrl);
@@ -0,0 +1,173 @@
+package org.nanopub.extra.server;
+
+/**
+ * Keeps track of how a server performs while nanopubs are fetched from it. The number of parallel
+ * requests to the server is adapted to the observed behavior (additive increase on success,
+ * multiplicative decrease on timeouts and errors), moving averages of latency and success are
+ * kept to weight the server against others, and after repeated failures no requests are sent to
+ * the server for a while (circuit breaker). After that while, a single request is let through,
+ * and only if it succeeds the server is used normally again.
+ *
+ * Instances are not thread-safe.
+ */
+class ServerStats {
+
+	public static final int initialParallelRequests = 5;
+	public static final int minParallelRequests = 1;
+	public static final int maxParallelRequests = 20;
+
+	// Weight of a new observation in the moving averages:
+	private static final double smoothing = 0.2;
+	// Latency assumed before the first response has been observed:
+	private static final double defaultLatencyMillis = 500;
+
+	private static final int failuresToOpen = 5;
+	private static final long minOpenMillis = 10 * 1000;
+	private static final long maxOpenMillis = 5 * 60 * 1000;
+
+	private double limit = initialParallelRequests;
+	private int load = 0;
+	private int usage = 0;
+	private double avgLatencyMillis = -1;
+	private double avgSuccess = 1.0;
+	private int consecutiveFailures = 0;
+	// Zero if the circuit is closed:
+	private long openUntil = 0;
+	private long openMillis = minOpenMillis;
+	// True while the single request after the waiting time is running:
+	private boolean trialRunning = false;
+
+	public ServerStats() {
+	}
+
+	/**
+	 * Returns true if another request can be sent to the server right now.
+	 */
+	public boolean hasCapacity() {
+		if (openUntil > 0) {
+			// When the waiting time is over, a single request is let through:
+			return System.currentTimeMillis() >= openUntil && load == 0;
+		}
+		return load < (int) limit;
+	}
+
+	/**
+	 * Returns the number of milliseconds until the server is accepting requests again after it
+	 * has been taken out by the circuit breaker, 0 if it can take requests now, or -1 if it is
+	 * busy and has to wait for running requests to finish.
+	 */
+	public long getMillisUntilAvailable() {
+		if (hasCapacity()) return 0;
+		if (openUntil > 0 && load == 0) return Math.max(1, openUntil - System.currentTimeMillis());
+		return -1;
+	}
+
+	public boolean isCircuitOpen() {
+		return openUntil > 0;
+	}
+
+	/**
+	 * Returns the estimated number of successful responses per second that the server can give
+	 * with its current number of parallel requests.
+	 */
+	public double getWeight() {
+		double latency = (avgLatencyMillis < 0 ? defaultLatencyMillis : avgLatencyMillis);
+		return Math.max(avgSuccess, 0.01) * limit * 1000 / Math.max(latency, 1);
+	}
+
+	public int getLoad() {
+		return load;
+	}
+
+	public int getParallelRequestLimit() {
+		return (int) limit;
+	}
+
+	public int getUsage() {
+		return usage;
+	}
+
+	/**
+	 * Counts a request that contributed to the result (and not only raced against another one).
+	 */
+	public void countUsage() {
+		usage++;
+	}
+
+	/**
+	 * Called when a request is sent to the server. Returns true if this is the single trial request
+	 * after the waiting time of the circuit breaker, which has to be passed on to requestTimedOut,
+	 * requestFailed, and requestAborted.
+	 */
+	public boolean requestStarted() {
+		load++;
+		// While the circuit is open, only the single trial request should be started (see hasCapacity):
+		if (openUntil > 0 && !trialRunning) {
+			trialRunning = true;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Called when the server gave a proper answer, which includes answering that it doesn't have
+	 * the requested nanopub. Any successful request closes the circuit.
+	 */
+	public void requestSucceeded(long latencyMillis) {
+		load--;
+		updateLatency(latencyMillis);
+		avgSuccess = avgSuccess * (1 - smoothing) + smoothing;
+		consecutiveFailures = 0;
+		trialRunning = false;
+		openUntil = 0;
+		openMillis = minOpenMillis;
+		limit = Math.min(maxParallelRequests, limit + 1 / limit);
+	}
+
+	public void requestTimedOut(boolean trial, long latencyMillis) {
+		load--;
+		updateLatency(latencyMillis);
+		failure(trial, 0.5);
+	}
+
+	public void requestFailed(boolean trial, long latencyMillis) {
+		load--;
+		updateLatency(latencyMillis);
+		failure(trial, 0.75);
+	}
+
+	/**
+	 * Called when the request didn't reach the server, which says nothing about the server.
+	 */
+	public void requestAborted(boolean trial) {
+		load--;
+		// Let another trial request through if this was the trial request:
+		if (trial) trialRunning = false;
+	}
+
+	private void updateLatency(long latencyMillis) {
+		if (avgLatencyMillis < 0) {
+			avgLatencyMillis = latencyMillis;
+		} else {
+			avgLatencyMillis = avgLatencyMillis * (1 - smoothing) + latencyMillis * smoothing;
+		}
+	}
+
+	private void failure(boolean trial, double decreaseFactor) {
+		if (openUntil > 0) {
+			// Failures of requests that were started before the circuit opened are ignored:
+			if (!trial || !trialRunning) return;
+			// The single request after the waiting time failed too:
+			trialRunning = false;
+			openMillis = Math.min(maxOpenMillis, openMillis * 2);
+			openUntil = System.currentTimeMillis() + openMillis;
+		}
+		avgSuccess = avgSuccess * (1 - smoothing);
+		limit = Math.max(minParallelRequests, limit * decreaseFactor);
+		consecutiveFailures++;
+		if (openUntil == 0 && consecutiveFailures >= failuresToOpen) {
+			openUntil = System.currentTimeMillis() + openMillis;
+		}
+	}
+
+}
@@ -33,6 +33,9 @@ public class Count {
 	@com.beust.jcommander.Parameter(names = "--in-format", description = "Format of the input nanopubs: trig, nq, trix, trig.gz, ...")
 	private String inFormat;
 
+	@com.beust.jcommander.Parameter(names = "--threads", description = "Number of worker threads")
+	private int threads = 1;
+
 	public static void main(String[] args) {
 		NanopubImpl.ensureLoaded();
 		Count obj = new Count();
@@ -87,7 +90,7 @@ public class Count {
 					countTriples(np);
 				}
 
-			});
+			}, threads, false);
 			if (tableFile == null) {
 				System.out.println("Nanopublications: " + npCount);
 				System.out.println("Head triples: " + headCount + " (average: " + ((((float) headCount)) / npCount) + ")");
@@ -104,7 +107,7 @@ public class Count {
 		}
 	}
 
-	public void countTriples(Nanopub np) {
+	public synchronized void countTriples(Nanopub np) {
 		npCount++;
 		headCount += np.getHead().size();
 		assertionCount += np.getAssertion().size();
@@ -22,7 +22,7 @@ import org.eclipse.rdf4j.rio.RDFWriter;
 import org.eclipse.rdf4j.rio.Rio;
 import org.nanopub.MalformedNanopubException;
 import org.nanopub.MultiNanopubRdfHandler;
-import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+import org.nanopub.MultiNanopubRdfHandler.TwoStepNanopubHandler;
 import org.nanopub.op.fingerprint.FingerprintHandler;
 import org.nanopub.Nanopub;
 import org.nanopub.NanopubImpl;
@@ -46,6 +46,12 @@ public class Decontextualize {
 	@com.beust.jcommander.Parameter(names = "--in-format", description = "Format of the input nanopubs: trig, nq, trix, trig.gz, ...")
 	private String inFormat;
 
+	@com.beust.jcommander.Parameter(names = "--threads", description = "Number of worker threads")
+	private int threads = 1;
+
+	@com.beust.jcommander.Parameter(names = "--unordered", description = "Do not keep the input order when using several threads")
+	private boolean unordered = false;
+
 	public static void main(String[] args) {
 		NanopubImpl.ensureLoaded();
 		Decontextualize obj = new Decontextualize();
@@ -87,18 +93,25 @@ public class Decontextualize {
 			writer = Rio.createWriter(RDFFormat.NQUADS, new OutputStreamWriter(outputStream, Charset.forName("UTF-8")));
 			writer.startRDF();
 
-			MultiNanopubRdfHandler.process(rdfInFormat, inputFile, new NanopubHandler() {
+			MultiNanopubRdfHandler.process(rdfInFormat, inputFile, new TwoStepNanopubHandler<List<Statement>>() {
+
+				@Override
+				public List<Statement> prepare(Nanopub np) {
+					return getNormalizedStatements(np);
+				}
 
 				@Override
-				public void handleNanopub(Nanopub np) {
+				public void handlePrepared(Nanopub np, List<Statement> statements) {
 					try {
-						process(np);
+						for (Statement st : statements) {
+							writer.handleStatement(st);
+						}
 					} catch (RDFHandlerException ex) {
 						throw new RuntimeException(ex);
 					}
 				}
 
-			});
+			}, threads, !unordered);
 
 			writer.endRDF();
 			outputStream.flush();
@@ -108,12 +121,6 @@ public class Decontextualize {
 		}
 	}
 
-	private void process(Nanopub np) throws RDFHandlerException {
-		for (Statement st : getNormalizedStatements(np)) {
-			writer.handleStatement(st);
-		}
-	}
-
 	private List<Statement> getNormalizedStatements(Nanopub np) {
 		List<Statement> statements = NanopubUtils.getStatements(np);
 		List<Statement> n = new ArrayList<>();
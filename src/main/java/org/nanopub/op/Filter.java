@@ -26,10 +26,11 @@ import org.eclipse.rdf4j.rio.RDFParseException;
 import org.eclipse.rdf4j.rio.Rio;
 import org.nanopub.MalformedNanopubException;
 import org.nanopub.MultiNanopubRdfHandler;
-import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+import org.nanopub.MultiNanopubRdfHandler.TwoStepNanopubHandler;
 import org.nanopub.Nanopub;
 import org.nanopub.NanopubImpl;
 import org.nanopub.NanopubUtils;
+import org.nanopub.NanopubWriter;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
@@ -65,6 +66,12 @@ public class Filter {
 	@com.beust.jcommander.Parameter(names = "--out-format", description = "Format of the output nanopubs: trig, nq, trix, trig.gz, ...")
 	private String outFormat;
 
+	@com.beust.jcommander.Parameter(names = "--threads", description = "Number of worker threads")
+	private int threads = 1;
+
+	@com.beust.jcommander.Parameter(names = "--unordered", description = "Do not keep the input order when using several threads")
+	private boolean unordered = false;
+
 	public static void main(String[] args) {
 		NanopubImpl.ensureLoaded();
 		Filter obj = new Filter();
@@ -85,6 +92,7 @@ public class Filter {
 
 	private RDFFormat rdfInFormat, rdfOutFormat;
 	private OutputStream outputStream = System.out;
+	private NanopubWriter writer;
 	private Map<String,Boolean> filterComponents = new HashMap<>();
 
 	private void run() throws IOException, RDFParseException, RDFHandlerException,
@@ -138,32 +146,35 @@ public class Filter {
 				}
 			}
 
-			MultiNanopubRdfHandler.process(rdfInFormat, inputFile, new NanopubHandler() {
+			writer = new NanopubWriter(outputStream, rdfOutFormat);
+
+			MultiNanopubRdfHandler.process(rdfInFormat, inputFile, new TwoStepNanopubHandler<Boolean>() {
+
+				@Override
+				public Boolean prepare(Nanopub np) {
+					return matchesFilter(np);
+				}
 
 				@Override
-				public void handleNanopub(Nanopub np) {
+				public void handlePrepared(Nanopub np, Boolean matches) {
+					if (!matches) return;
 					try {
-						process(np);
+						writer.write(np);
 					} catch (RDFHandlerException ex) {
 						throw new RuntimeException(ex);
 					}
 				}
 
-			});
+			}, threads, !unordered);
 
-			outputStream.flush();
 			if (outputStream != System.out) {
-				outputStream.close();
+				writer.close();
+			} else {
+				writer.finish();
 			}
 		}
 	}
 
-	private void process(Nanopub np) throws RDFHandlerException {
-		if (matchesFilter(np)) {
-			NanopubUtils.writeToStream(np, outputStream, rdfOutFormat);
-		}
-	}
-
 	private boolean matchesFilter(Nanopub np) {
 		if (noExamples && isExampleNanopub(np)) {
 			return false;
@@ -172,7 +183,7 @@ public class Filter {
 			return false;
 		}
 		if (filterComponents == null) return true;
-		for (Statement st : NanopubUtils.getStatements(np)) {
+		for (Statement st : NanopubUtils.getUnmodifiableStatements(np)) {
 			if (filterComponents.containsKey(st.getSubject().stringValue())) {
 				return true;
 			}
@@ -196,7 +207,7 @@ public class Filter {
 		if (np.getPubinfo().contains(SimpleValueFactory.getInstance().createStatement(np.getUri(), RDF.TYPE, exampleNanopubType))) {
 			return true;
 		}
-		for (Statement st : NanopubUtils.getStatements(np)) {
+		for (Statement st : NanopubUtils.getUnmodifiableStatements(np)) {
 			if (isExampleUri(st.getSubject())) return true;
 			if (isExampleUri(st.getPredicate())) return true;
 			if (isExampleUri(st.getObject())) return true;
@@ -14,7 +14,7 @@ import net.trustyuri.TrustyUriException;
 
 import org.nanopub.MalformedNanopubException;
 import org.nanopub.MultiNanopubRdfHandler;
-import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+import org.nanopub.MultiNanopubRdfHandler.TwoStepNanopubHandler;
 import org.nanopub.op.fingerprint.DefaultFingerprints;
 import org.nanopub.op.fingerprint.FingerprintHandler;
 import org.nanopub.Nanopub;
@@ -47,9 +47,15 @@ public class Fingerprint {
 	@com.beust.jcommander.Parameter(names = "--ignore-pubinfo", description = "Ignore the publication info graph for fingerprint calculation")
 	private boolean ignorePubinfo;
 
-	@com.beust.jcommander.Parameter(names = "-h", description = "Fingerprint handler class")
+	@com.beust.jcommander.Parameter(names = "-h", description = "Fingerprint handler class (needs to be thread-safe when using several threads)")
 	private String handlerClass;
 
+	@com.beust.jcommander.Parameter(names = "--threads", description = "Number of worker threads")
+	private int threads = 1;
+
+	@com.beust.jcommander.Parameter(names = "--unordered", description = "Do not keep the input order when using several threads")
+	private boolean unordered = false;
+
 	public static void main(String[] args) {
 		NanopubImpl.ensureLoaded();
 		Fingerprint obj = new Fingerprint();
@@ -121,12 +127,12 @@ public class Fingerprint {
 
 			writer = new BufferedWriter(new OutputStreamWriter(outputStream));
 
-			MultiNanopubRdfHandler.process(rdfInFormat, inputFile, new NanopubHandler() {
+			MultiNanopubRdfHandler.process(rdfInFormat, inputFile, new TwoStepNanopubHandler<String>() {
 
 				@Override
-				public void handleNanopub(Nanopub np) {
+				public String prepare(Nanopub np) {
 					try {
-						writer.write(np.getUri() + " " + getFingerprint(np) + "\n");
+						return np.getUri() + " " + getFingerprint(np) + "\n";
 					} catch (RDFHandlerException ex) {
 						throw new RuntimeException(ex);
 					} catch (IOException ex) {
@@ -134,7 +140,16 @@ public class Fingerprint {
 					}
 				}
 
-			});
+				@Override
+				public void handlePrepared(Nanopub np, String line) {
+					try {
+						writer.write(line);
+					} catch (IOException ex) {
+						throw new RuntimeException(ex);
+					}
+				}
+
+			}, threads, !unordered);
 
 			writer.flush();
 			if (outputStream != System.out) {
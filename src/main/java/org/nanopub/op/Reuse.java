@@ -29,6 +29,7 @@ import org.nanopub.Nanopub;
 import org.nanopub.NanopubImpl;
 import org.nanopub.NanopubRdfHandler;
 import org.nanopub.NanopubUtils;
+import org.nanopub.NanopubWriter;
 import org.nanopub.trusty.FixTrustyNanopub;
 
 import com.beust.jcommander.JCommander;
@@ -102,6 +103,7 @@ public class Reuse {
 	private RDFFormat rdfInFormat, rdfReuseFormat, rdfOutFormat;
 	private PrintStream outputStream = System.out;
 	private PrintStream allOutputStream;
+	private NanopubWriter writer, allWriter;
 	private PrintStream cacheStream;
 	private Map<String,String> reusableNanopubs = new HashMap<>();
 	private Map<String,String> existingTopics = new HashMap<>();
@@ -235,7 +237,9 @@ public class Reuse {
 				} else {
 					allOutputStream = new PrintStream(new FileOutputStream(allOutputFile));
 				}
+				allWriter = new NanopubWriter(allOutputStream, rdfOutFormat);
 			}
+			writer = new NanopubWriter(outputStream, rdfOutFormat);
 
 			MultiNanopubRdfHandler.process(rdfInFormat, inputFile, new NanopubHandler() {
 
@@ -250,13 +254,13 @@ public class Reuse {
 
 			});
 
-			outputStream.flush();
 			if (outputStream != System.out) {
-				outputStream.close();
+				writer.close();
+			} else {
+				writer.finish();
 			}
-			if (allOutputStream != null) {
-				allOutputStream.flush();
-				allOutputStream.close();
+			if (allWriter != null) {
+				allWriter.close();
 			}
 			if (cacheStream != null) {
 				cacheStream.flush();
@@ -313,8 +317,8 @@ public class Reuse {
 				}
 				existingTopics.put(t, matchedNanopub);
 			}
-			if (allOutputStream != null) {
-				allOutputStream.println(reuseNanopubMap.get(fp));
+			if (allWriter != null) {
+				allWriter.writeText(reuseNanopubMap.get(fp) + "\n");
 			}
 		} else {
 			if (addSupersedesBacklinks) {
@@ -335,10 +339,10 @@ public class Reuse {
 				}
 			}
 			if (outputNew) {
-				NanopubUtils.writeToStream(np, outputStream, rdfOutFormat);
+				writer.write(np);
 			}
-			if (allOutputStream != null) {
-				NanopubUtils.writeToStream(np, allOutputStream, rdfOutFormat);
+			if (allWriter != null) {
+				allWriter.write(np);
 			}
 		}
 		if (cacheStream != null) {
@@ -14,7 +14,7 @@ import net.trustyuri.TrustyUriException;
 
 import org.nanopub.MalformedNanopubException;
 import org.nanopub.MultiNanopubRdfHandler;
-import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+import org.nanopub.MultiNanopubRdfHandler.TwoStepNanopubHandler;
 import org.nanopub.op.topic.DefaultTopics;
 import org.nanopub.Nanopub;
 import org.nanopub.NanopubImpl;
@@ -40,9 +40,15 @@ public class Topic {
 	@com.beust.jcommander.Parameter(names = "-i", description = "Property URIs to ignore, separated by '|' (has no effect if -d is set)")
 	private String ignoreProperties;
 
-	@com.beust.jcommander.Parameter(names = "-h", description = "Topic handler class")
+	@com.beust.jcommander.Parameter(names = "-h", description = "Topic handler class (needs to be thread-safe when using several threads)")
 	private String handlerClass;
 
+	@com.beust.jcommander.Parameter(names = "--threads", description = "Number of worker threads")
+	private int threads = 1;
+
+	@com.beust.jcommander.Parameter(names = "--unordered", description = "Do not keep the input order when using several threads")
+	private boolean unordered = false;
+
 	public static void main(String[] args) {
 		NanopubImpl.ensureLoaded();
 		Topic obj = new Topic();
@@ -114,18 +120,23 @@ public class Topic {
 
 			writer = new BufferedWriter(new OutputStreamWriter(outputStream));
 
-			MultiNanopubRdfHandler.process(rdfInFormat, inputFile, new NanopubHandler() {
+			MultiNanopubRdfHandler.process(rdfInFormat, inputFile, new TwoStepNanopubHandler<String>() {
+
+				@Override
+				public String prepare(Nanopub np) {
+					return np.getUri() + " " + getTopic(np) + "\n";
+				}
 
 				@Override
-				public void handleNanopub(Nanopub np) {
+				public void handlePrepared(Nanopub np, String line) {
 					try {
-						writer.write(np.getUri() + " " + getTopic(np) + "\n");
+						writer.write(line);
 					} catch (IOException ex) {
 						throw new RuntimeException(ex);
 					}
 				}
 
-			});
+			}, threads, !unordered);
 
 			writer.flush();
 			if (outputStream != System.out) {
@@ -19,7 +19,7 @@ import org.nanopub.MultiNanopubRdfHandler;
 import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
 import org.nanopub.Nanopub;
 import org.nanopub.NanopubImpl;
-import org.nanopub.NanopubUtils;
+import org.nanopub.NanopubWriter;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
@@ -60,6 +60,7 @@ public class Union {
 
 	private RDFFormat rdfInFormat, rdfOutFormat;
 	private OutputStream outputStream = System.out;
+	private NanopubWriter writer;
 	private Map<String,Boolean> seen = new HashMap<String,Boolean>();
 	private int duplicates = 0;
 
@@ -79,6 +80,8 @@ public class Union {
 			}
 		}
 
+		writer = new NanopubWriter(outputStream, rdfOutFormat);
+
 		for (File inputFile : inputNanopubs) {
 			if (inFormat != null) {
 				rdfInFormat = Rio.getParserFormatForFileName("file." + inFormat).orElse(null);
@@ -102,9 +105,10 @@ public class Union {
 		}
 
 		System.err.println(duplicates + " duplicates eliminated");
-		outputStream.flush();
 		if (outputStream != System.out) {
-			outputStream.close();
+			writer.close();
+		} else {
+			writer.finish();
 		}
 	}
 
@@ -113,7 +117,7 @@ public class Union {
 		if (seen.containsKey(u)) {
 			duplicates++;
 		} else {
-			NanopubUtils.writeToStream(np, outputStream, rdfOutFormat);
+			writer.write(np);
 			seen.put(u, true);
 		}
 	}
@@ -10,16 +10,20 @@ import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.rio.RDFHandler;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.nanopub.PrefixTrie;
 
 public class CrossRefResolver implements RDFHandler {
 
 	private Map<Resource,IRI> tempRefMap;
-	private Map<String,String> tempPrefixMap;
+	private PrefixTrie tempPrefixTrie;
 	private RDFHandler nestedHandler;
 
 	public CrossRefResolver(Map<Resource,IRI> tempRefMap, Map<String,String> tempPrefixMap, RDFHandler nestedHandler) {
 		this.tempRefMap = tempRefMap;
-		this.tempPrefixMap = tempPrefixMap;
+		if (tempPrefixMap != null && !tempPrefixMap.isEmpty()) {
+			// Cheap for a PrefixMap, which keeps its trie up to date:
+			this.tempPrefixTrie = PrefixMap.getTrie(tempPrefixMap);
+		}
 		this.nestedHandler = nestedHandler;
 	}
 
@@ -34,19 +38,23 @@ public class CrossRefResolver implements RDFHandler {
 
 	@Override
 	public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
-		String transformedUri = replace(SimpleValueFactory.getInstance().createIRI(uri)).stringValue();
-		nestedHandler.handleNamespace(prefix, transformedUri);
+		nestedHandler.handleNamespace(prefix, replaceNamespace(uri));
+	}
+
+	String replaceNamespace(String uri) {
+		return replace(SimpleValueFactory.getInstance().createIRI(uri)).stringValue();
 	}
 
-	private Value replace(Value v) {
+	Value replace(Value v) {
 		if (!(v instanceof Resource)) return v;
 		IRI i = tempRefMap.get(v);
 		if (i != null) return i;
-		if (v instanceof IRI && tempPrefixMap != null) {
-			for (String prefix : tempPrefixMap.keySet()) {
-				if (v.stringValue().startsWith(prefix)) {
-					return vf.createIRI(v.stringValue().replace(prefix, tempPrefixMap.get(prefix)));
-				}
+		if (v instanceof IRI && tempPrefixTrie != null) {
+			// The longest matching prefix is replaced:
+			String s = v.stringValue();
+			int l = tempPrefixTrie.getLongestPrefixLength(s);
+			if (l >= 0) {
+				return vf.createIRI(tempPrefixTrie.get(s, l) + s.substring(l));
 			}
 		}
 		return v;
@@ -57,6 +57,9 @@ public class MakeTrustyNanopub {
 	@com.beust.jcommander.Parameter(names = "-v", description = "Verbose")
 	private boolean verbose = false;
 
+	@com.beust.jcommander.Parameter(names = "--threads", description = "Number of threads (loads all input into memory; output stays the same)")
+	private int threads = 1;
+
 	public static void main(String[] args) {
 		NanopubImpl.ensureLoaded();
 		MakeTrustyNanopub obj = new MakeTrustyNanopub();
@@ -77,10 +80,14 @@ public class MakeTrustyNanopub {
 
 	private void run() throws IOException, RDFParseException, RDFHandlerException,
 			MalformedNanopubException, TrustyUriException {
+		if (threads > 1) {
+			runInParallel();
+			return;
+		}
 		final Map<Resource,IRI> tempRefMap;
 		final Map<String,String> tempPrefixMap;
 		if (resolveCrossRefsPrefixBased) {
-			tempPrefixMap = new HashMap<>();
+			tempPrefixMap = new PrefixMap();
 			tempRefMap = new HashMap<>();
 		} else if (resolveCrossRefs) {
 			tempPrefixMap = null;
@@ -139,6 +146,72 @@ public class MakeTrustyNanopub {
 		}
 	}
 
+	private void runInParallel() throws IOException, RDFParseException, RDFHandlerException,
+			MalformedNanopubException, TrustyUriException {
+		// Cross-references can go across files, so all nanopubs are transformed together:
+		final List<Nanopub> nanopubs = new ArrayList<>();
+		List<Integer> fileEnds = new ArrayList<>();
+		for (File inputFile : inputNanopubsFiles) {
+			RDFFormat inFormat = new TrustyUriResource(inputFile).getFormat(RDFFormat.TRIG);
+			MultiNanopubRdfHandler.process(inFormat, inputFile, new NanopubHandler() {
+
+				@Override
+				public void handleNanopub(Nanopub np) {
+					nanopubs.add(np);
+				}
+
+			});
+			fileEnds.add(nanopubs.size());
+		}
+		ParallelTrustyTransformer transformer = new ParallelTrustyTransformer(resolveCrossRefs, resolveCrossRefsPrefixBased, threads);
+		List<Nanopub> trustyNanopubs = transformer.transform(nanopubs);
+		if (verbose && transformer.wasSequential()) {
+			System.err.println("Cross-references do not allow for parallel processing; transformed sequentially");
+		}
+
+		OutputStream singleOut = null;
+		RDFFormat singleOutFormat = null;
+		if (singleOutputFile != null) {
+			if (singleOutputFile.getName().matches(".*\\.(gz|gzip)")) {
+				singleOut = new GZIPOutputStream(new FileOutputStream(singleOutputFile));
+			} else {
+				singleOut = new FileOutputStream(singleOutputFile);
+			}
+			singleOutFormat = new TrustyUriResource(singleOutputFile).getFormat(RDFFormat.TRIG);
+		}
+		int start = 0;
+		for (int f = 0 ; f < inputNanopubsFiles.size() ; f++) {
+			File inputFile = inputNanopubsFiles.get(f);
+			OutputStream out;
+			RDFFormat outFormat;
+			if (singleOutputFile == null) {
+				File outputFile = new File(inputFile.getParent(), "trusty." + inputFile.getName());
+				if (inputFile.getName().matches(".*\\.(gz|gzip)")) {
+					out = new GZIPOutputStream(new FileOutputStream(outputFile));
+				} else {
+					out = new FileOutputStream(outputFile);
+				}
+				outFormat = new TrustyUriResource(outputFile).getFormat(RDFFormat.TRIG);
+			} else {
+				out = singleOut;
+				outFormat = singleOutFormat;
+			}
+			for (Nanopub np : trustyNanopubs.subList(start, fileEnds.get(f))) {
+				write(np, outFormat, out);
+				if (verbose) {
+					System.out.println("Nanopub URI: " + np.getUri());
+				}
+			}
+			start = fileEnds.get(f);
+			if (singleOutputFile == null) {
+				out.close();
+			}
+		}
+		if (singleOutputFile != null) {
+			singleOut.close();
+		}
+	}
+
 	public static Nanopub transform(Nanopub nanopub) throws TrustyUriException {
 		return transform(nanopub, null, null);
 	}
@@ -156,23 +229,32 @@ public class MakeTrustyNanopub {
 			RdfFileContent r = new RdfFileContent(RDFFormat.TRIG);
 			String npUri;
 			Map<Resource,IRI> tempUriReplacerMap = null;
+			TempUriReplacer tempUriReplacer = null;
 			if (TempUriReplacer.hasTempUri(nanopub)) {
 				npUri = TempUriReplacer.normUri;
 				tempUriReplacerMap = new HashMap<>();
-				NanopubUtils.propagateToHandler(nanopub, new TempUriReplacer(nanopub, r, tempUriReplacerMap));
+				tempUriReplacer = new TempUriReplacer(nanopub, null, tempUriReplacerMap);
 			} else {
 				npUri = nanopub.getUri().toString();
-				NanopubUtils.propagateToHandler(nanopub, r);
 			}
+			CrossRefResolver crossRefResolver = null;
 			if (tempRefMap != null || tempPrefixMap != null) {
 				if (tempRefMap == null) {
 					tempRefMap = new HashMap<>();
 				}
-				mergeTransformMaps(tempRefMap, tempUriReplacerMap);
-				RdfFileContent r2 = new RdfFileContent(RDFFormat.TRIG);
-				r.propagate(new CrossRefResolver(tempRefMap, tempPrefixMap, r2));
-				r = r2;
+				if (!tempRefMap.isEmpty() || (tempPrefixMap != null && !tempPrefixMap.isEmpty())) {
+					crossRefResolver = new CrossRefResolver(tempRefMap, tempPrefixMap, null);
+				}
+			}
+			// Temporary URIs and cross-references are replaced in a single pass, if needed at all:
+			if (tempUriReplacer == null && crossRefResolver == null) {
+				NanopubUtils.propagateToHandler(nanopub, r);
+			} else {
+				NanopubUtils.propagateToHandler(nanopub, new UriRewriter(tempUriReplacer, crossRefResolver, r));
 			}
+			// The entries for the temporary URIs of this nanopub cannot affect the replacements above,
+			// so they can be added afterwards:
+			mergeTransformMaps(tempRefMap, tempUriReplacerMap);
 			NanopubRdfHandler h = new NanopubRdfHandler();
 			Map<Resource,IRI> transformMap = TransformRdf.transformAndGetMap(r, h, npUri);
 			np = h.getNanopub();
@@ -235,9 +317,13 @@ public class MakeTrustyNanopub {
 	public static Nanopub writeAsTrustyNanopub(Nanopub np, RDFFormat format, OutputStream out, Map<Resource,IRI> tempRefMap, Map<String,String> tempPrefixMap)
 			throws RDFHandlerException, TrustyUriException {
 		np = MakeTrustyNanopub.transform(np, tempRefMap, tempPrefixMap);
+		write(np, format, out);
+		return np;
+	}
+
+	private static void write(Nanopub np, RDFFormat format, OutputStream out) throws RDFHandlerException {
 		RDFWriter w = Rio.createWriter(format, new OutputStreamWriter(out, Charset.forName("UTF-8")));
 		NanopubUtils.propagateToHandler(np, w);
-		return np;
 	}
 
 	static void mergeTransformMaps(Map<Resource,IRI> mainMap, Map<Resource,IRI> mapToMerge) {
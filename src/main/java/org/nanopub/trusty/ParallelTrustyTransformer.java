@@ -0,0 +1,282 @@
+package org.nanopub.trusty;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.nanopub.Nanopub;
+import org.nanopub.NanopubUtils;
+import org.nanopub.NanopubWithNs;
+import org.nanopub.OrderedExecutor;
+import org.nanopub.PrefixTrie;
+
+import net.trustyuri.TrustyUriException;
+
+/**
+ * Transforms a list of nanopubs into trusty nanopubs on several threads, with the same result as
+ * calling MakeTrustyNanopub.transform on each of them in turn with shared maps for cross-nanopub
+ * references.
+ *
+ * The input is first scanned for dependencies: a nanopub depends on an earlier one if one of them
+ * contains a URI that starts with the URI of the other, or if they share a blank node. The
+ * nanopubs are then transformed in waves, such that each nanopub comes after all the nanopubs it
+ * depends on. Each nanopub is transformed with maps that only contain the entries added by the
+ * nanopubs it depends on, which are the only ones that can have an effect on it.
+ *
+ * In a few cases where this cannot be guaranteed (if the input contains URIs with the placeholder
+ * for the artifact code, or for prefix-based resolution together with temporary URIs), all
+ * nanopubs are transformed one after the other.
+ */
+public class ParallelTrustyTransformer {
+
+	private static final String trustyNpUriStart = "http://purl.org/np/RA";
+
+	private final boolean resolveCrossRefs;
+	private final boolean prefixBased;
+	private final int threadCount;
+
+	private List<Nanopub> nanopubs;
+	// For each nanopub, the earlier nanopubs it depends on:
+	private List<TreeSet<Integer>> dependencies;
+	private boolean sequential;
+
+	/**
+	 * Creates a new transformer. With resolveCrossRefs set, references to other nanopubs are
+	 * resolved as with the -r option of MakeTrustyNanopub; with prefixBased also set, this is done
+	 * as with the -R option.
+	 */
+	public ParallelTrustyTransformer(boolean resolveCrossRefs, boolean prefixBased, int threadCount) {
+		this.resolveCrossRefs = resolveCrossRefs || prefixBased;
+		this.prefixBased = prefixBased;
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Returns the trusty nanopubs in the same order as the given ones.
+	 */
+	public List<Nanopub> transform(List<Nanopub> nanopubs) throws TrustyUriException {
+		this.nanopubs = nanopubs;
+		if (resolveCrossRefs) {
+			findDependencies();
+		} else {
+			sequential = false;
+			dependencies = null;
+		}
+		if (sequential) {
+			return transformSequentially();
+		}
+		return transformInWaves();
+	}
+
+	/**
+	 * Returns true if the last call of transform had to fall back to sequential transformation.
+	 */
+	public boolean wasSequential() {
+		return sequential;
+	}
+
+	private List<Nanopub> transformSequentially() throws TrustyUriException {
+		Map<Resource,IRI> tempRefMap = new HashMap<>();
+		Map<String,String> tempPrefixMap = (prefixBased ? new PrefixMap() : null);
+		List<Nanopub> results = new ArrayList<>(nanopubs.size());
+		for (Nanopub np : nanopubs) {
+			results.add(MakeTrustyNanopub.transform(np, tempRefMap, tempPrefixMap));
+		}
+		return results;
+	}
+
+	private List<Nanopub> transformInWaves() throws TrustyUriException {
+		final int n = nanopubs.size();
+		final Nanopub[] results = new Nanopub[n];
+		final Contribution[] contributions = new Contribution[n];
+
+		// Each nanopub goes into the wave after the last wave of the nanopubs it depends on:
+		int[] wave = new int[n];
+		int waveCount = 0;
+		for (int i = 0 ; i < n ; i++) {
+			if (dependencies != null) {
+				for (int j : dependencies.get(i)) {
+					if (wave[j] >= wave[i]) wave[i] = wave[j] + 1;
+				}
+			}
+			if (wave[i] >= waveCount) waveCount = wave[i] + 1;
+		}
+		List<List<Integer>> waves = new ArrayList<>();
+		for (int w = 0 ; w < waveCount ; w++) {
+			waves.add(new ArrayList<Integer>());
+		}
+		for (int i = 0 ; i < n ; i++) {
+			waves.get(wave[i]).add(i);
+		}
+
+		// Results are stored in the arrays, so there is nothing to do with the task results:
+		OrderedExecutor<Void> executor = new OrderedExecutor<Void>("nanopub-trusty", threadCount, n, false,
+				new OrderedExecutor.ResultHandler<Void>() {
+
+					@Override
+					public void handleResult(Void result) {
+					}
+
+				});
+		try {
+			for (List<Integer> w : waves) {
+				for (final int i : w) {
+					executor.submit(new Callable<Void>() {
+
+						@Override
+						public Void call() throws TrustyUriException {
+							transformSingle(i, results, contributions);
+							return null;
+						}
+
+					});
+				}
+				executor.await();
+			}
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof TrustyUriException) throw (TrustyUriException) ex.getCause();
+			throw OrderedExecutor.unwrap(ex);
+		} finally {
+			executor.shutdown();
+		}
+
+		List<Nanopub> resultList = new ArrayList<>(n);
+		for (Nanopub np : results) {
+			resultList.add(np);
+		}
+		return resultList;
+	}
+
+	// Called from the worker threads; only reads the contributions of earlier waves:
+	private void transformSingle(int i, Nanopub[] results, Contribution[] contributions) throws TrustyUriException {
+		if (!resolveCrossRefs) {
+			results[i] = MakeTrustyNanopub.transform(nanopubs.get(i));
+			return;
+		}
+		Map<Resource,IRI> tempRefMap = new HashMap<>();
+		Map<String,String> tempPrefixMap = (prefixBased ? new PrefixMap() : null);
+		for (int j : dependencies.get(i)) {
+			Contribution c = contributions[j];
+			tempRefMap.putAll(c.refMap);
+			if (tempPrefixMap != null) tempPrefixMap.putAll(c.prefixMap);
+		}
+		Map<Resource,IRI> refMapBefore = new HashMap<>(tempRefMap);
+		Map<String,String> prefixMapBefore = (prefixBased ? new HashMap<String,String>(tempPrefixMap) : null);
+		results[i] = MakeTrustyNanopub.transform(nanopubs.get(i), tempRefMap, tempPrefixMap);
+		Contribution c = new Contribution();
+		for (Resource r : tempRefMap.keySet()) {
+			IRI v = tempRefMap.get(r);
+			if (!v.equals(refMapBefore.get(r))) c.refMap.put(r, v);
+		}
+		if (tempPrefixMap != null) {
+			for (String p : tempPrefixMap.keySet()) {
+				String v = tempPrefixMap.get(p);
+				if (!v.equals(prefixMapBefore.get(p))) c.prefixMap.put(p, v);
+			}
+		}
+		contributions[i] = c;
+	}
+
+	private void findDependencies() {
+		int n = nanopubs.size();
+		sequential = false;
+		dependencies = new ArrayList<>(n);
+		PrefixTrie uriTrie = new PrefixTrie();
+		Map<String,List<Integer>> uriIndexes = new HashMap<>();
+		boolean hasTempUris = false;
+		for (int i = 0 ; i < n ; i++) {
+			dependencies.add(new TreeSet<Integer>());
+			Nanopub np = nanopubs.get(i);
+			String uri = np.getUri().stringValue();
+			if (trustyNpUriStart.startsWith(uri)) {
+				// Could overlap with the trusty URIs that are created:
+				sequential = true;
+				return;
+			}
+			if (TempUriReplacer.hasTempUri(np)) hasTempUris = true;
+			uriTrie.put(uri, uri);
+			if (!uriIndexes.containsKey(uri)) uriIndexes.put(uri, new ArrayList<Integer>());
+			uriIndexes.get(uri).add(i);
+		}
+		if (prefixBased && hasTempUris) {
+			// All temporary URIs are mapped to the same placeholder URI before being transformed:
+			sequential = true;
+			return;
+		}
+
+		Map<String,List<Integer>> bnodeIndexes = new HashMap<>();
+		List<String> owners = new ArrayList<>();
+		for (int i = 0 ; i < n ; i++) {
+			Nanopub np = nanopubs.get(i);
+			List<String> iris = new ArrayList<>();
+			for (Statement st : NanopubUtils.getUnmodifiableStatements(np)) {
+				addResource(st.getSubject(), i, iris, bnodeIndexes);
+				addResource(st.getPredicate(), i, iris, bnodeIndexes);
+				addResource(st.getObject(), i, iris, bnodeIndexes);
+				addResource(st.getContext(), i, iris, bnodeIndexes);
+			}
+			if (np instanceof NanopubWithNs) {
+				NanopubWithNs npNs = (NanopubWithNs) np;
+				for (String prefix : npNs.getNsPrefixes()) {
+					iris.add(npNs.getNamespace(prefix));
+				}
+			}
+			for (String iri : iris) {
+				if (iri.startsWith(TempUriReplacer.normUri)) {
+					// Placeholder URIs could be left in the maps and affect later nanopubs:
+					sequential = true;
+					return;
+				}
+				owners.clear();
+				uriTrie.collectPrefixValues(iri, owners);
+				for (String owner : owners) {
+					for (int j : uriIndexes.get(owner)) {
+						addDependency(i, j);
+					}
+				}
+			}
+		}
+	}
+
+	private void addResource(Value v, int i, List<String> iris, Map<String,List<Integer>> bnodeIndexes) {
+		if (v instanceof IRI) {
+			iris.add(v.stringValue());
+		} else if (v instanceof BNode) {
+			String id = ((BNode) v).getID();
+			List<Integer> l = bnodeIndexes.get(id);
+			if (l == null) {
+				l = new ArrayList<>();
+				bnodeIndexes.put(id, l);
+			}
+			if (!l.isEmpty() && l.get(l.size() - 1) == i) return;
+			for (int j : l) {
+				addDependency(i, j);
+			}
+			l.add(i);
+		}
+	}
+
+	// The nanopub that comes later depends on the one that comes first:
+	private void addDependency(int i, int j) {
+		if (i == j) return;
+		dependencies.get(Math.max(i, j)).add(Math.min(i, j));
+	}
+
+
+	private static class Contribution {
+
+		final Map<Resource,IRI> refMap = new HashMap<>();
+		final Map<String,String> prefixMap = new HashMap<>();
+
+	}
+
+}
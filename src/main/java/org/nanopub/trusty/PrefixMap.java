@@ -0,0 +1,102 @@
+package org.nanopub.trusty;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.nanopub.PrefixTrie;
+
+/**
+ * A map from URI prefixes to their replacements that keeps a prefix trie up to date, so the
+ * matching prefix for a URI can be found in time proportional to the length of that URI. The map
+ * can only be changed via put, remove, and clear, which the other changing methods (such as
+ * putAll, putIfAbsent, replace, compute, and merge) are based on. Its entry, key, and value sets
+ * are read-only, so the trie cannot get out of date.
+ */
+public class PrefixMap extends AbstractMap<String,String> {
+
+	private final Map<String,String> map = new HashMap<>();
+	private final Set<Map.Entry<String,String>> entrySet = Collections.unmodifiableMap(map).entrySet();
+	private PrefixTrie trie = new PrefixTrie();
+
+	public PrefixMap() {
+	}
+
+	public PrefixMap(Map<String,String> map) {
+		putAll(map);
+	}
+
+	@Override
+	public String put(String key, String value) {
+		String previous = map.put(key, value);
+		if (value == null) {
+			// The trie cannot hold null values
+			trie.remove(key);
+		} else {
+			trie.put(key, value);
+		}
+		return previous;
+	}
+
+	@Override
+	public String remove(Object key) {
+		if (!map.containsKey(key)) return null;
+		String previous = map.remove(key);
+		trie.remove((String) key);
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		map.clear();
+		trie = new PrefixTrie();
+	}
+
+	@Override
+	public String get(Object key) {
+		return map.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return map.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public Set<Map.Entry<String,String>> entrySet() {
+		return entrySet;
+	}
+
+	/**
+	 * Returns a trie with the same content as this map (leaving out null values). The trie is kept
+	 * up to date and must not be changed.
+	 */
+	public PrefixTrie getTrie() {
+		return trie;
+	}
+
+	/**
+	 * Returns a trie with the same content as the given map, which is only built anew if the map
+	 * is not a PrefixMap.
+	 */
+	public static PrefixTrie getTrie(Map<String,String> map) {
+		if (map instanceof PrefixMap) return ((PrefixMap) map).getTrie();
+		return buildTrie(map);
+	}
+
+	private static PrefixTrie buildTrie(Map<String,String> map) {
+		PrefixTrie trie = new PrefixTrie();
+		for (Map.Entry<String,String> e : map.entrySet()) {
+			if (e.getValue() != null) trie.put(e.getKey(), e.getValue());
+		}
+		return trie;
+	}
+
+}
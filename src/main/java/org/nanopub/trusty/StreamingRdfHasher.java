@@ -0,0 +1,316 @@
+package org.nanopub.trusty;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+
+import net.trustyuri.rdf.RdfHasher;
+import net.trustyuri.rdf.RdfModule;
+
+/**
+ * Computes the same hash input as RdfHasher.getDigestString (for trusty URIs of type RA and for
+ * signatures), but writes it straight into a MessageDigest or Signature via a small byte buffer
+ * instead of building one string for the whole nanopub. The message digests are kept per thread
+ * and reused.
+ *
+ * When this class is loaded, its output is compared with the one of RdfHasher on a set of test
+ * statements. If they differ (e.g. with a different version of the trustyuri library), all methods
+ * fall back to RdfHasher.
+ */
+public class StreamingRdfHasher {
+
+	private StreamingRdfHasher() {}  // no instances allowed
+
+	private static final Charset utf8 = Charset.forName("UTF-8");
+
+	private static final ThreadLocal<MessageDigest> sha256 = new ThreadLocal<MessageDigest>() {
+
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+
+	};
+
+	private static final ThreadLocal<DigestWriter> digestWriter = new ThreadLocal<DigestWriter>() {
+
+		@Override
+		protected DigestWriter initialValue() {
+			return new DigestWriter();
+		}
+
+	};
+
+	private static final boolean consistentWithRdfHasher = checkConsistency();
+
+	public static boolean isConsistentWithRdfHasher() {
+		return consistentWithRdfHasher;
+	}
+
+	/**
+	 * Returns the same artifact code as RdfHasher.makeArtifactCode for the given preprocessed
+	 * statements. Unlike RdfHasher, the given list is not sorted in place.
+	 */
+	public static String makeArtifactCode(List<Statement> statements) {
+		if (!consistentWithRdfHasher) {
+			return RdfHasher.makeArtifactCode(new ArrayList<>(statements));
+		}
+		MessageDigest md = sha256.get();
+		md.reset();
+		DigestWriter w = digestWriter.get();
+		try {
+			w.write(statements, md, null);
+		} catch (SignatureException ex) {
+			// cannot happen without signature
+			throw new RuntimeException(ex);
+		}
+		return RdfModule.MODULE_ID + getBase64(md.digest());
+	}
+
+	/**
+	 * Feeds the given preprocessed statements to the signature in the same way as
+	 * signature.update(RdfHasher.getDigestString(statements).getBytes()).
+	 */
+	public static void update(Signature signature, List<Statement> statements) throws SignatureException {
+		if (!consistentWithRdfHasher || !utf8.equals(Charset.defaultCharset())) {
+			// The old code uses the platform encoding for signatures:
+			signature.update(RdfHasher.getDigestString(new ArrayList<>(statements)).getBytes());
+			return;
+		}
+		digestWriter.get().write(statements, null, signature);
+	}
+
+	static String getBase64(byte[] bytes) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+	}
+
+
+	private static final Comparator<Statement> statementComparator = new Comparator<Statement>() {
+
+		@Override
+		public int compare(Statement st1, Statement st2) {
+			int c = compareResources(st1.getContext(), st2.getContext());
+			if (c != 0) return c;
+			c = compareResources(st1.getSubject(), st2.getSubject());
+			if (c != 0) return c;
+			c = compareResources(st1.getPredicate(), st2.getPredicate());
+			if (c != 0) return c;
+			return compareObjects(st1.getObject(), st2.getObject());
+		}
+
+		private int compareResources(Resource r1, Resource r2) {
+			if (r1 == null) return (r2 == null ? 0 : -1);
+			if (r2 == null) return 1;
+			return r1.toString().compareTo(r2.toString());
+		}
+
+		private int compareObjects(Value v1, Value v2) {
+			if (v1 instanceof Literal && v2 instanceof Literal) {
+				Literal l1 = (Literal) v1;
+				Literal l2 = (Literal) v2;
+				int c = l1.stringValue().compareTo(l2.stringValue());
+				if (c != 0) return c;
+				c = compareStrings(getDatatypeString(l1), getDatatypeString(l2));
+				if (c != 0) return c;
+				return compareStrings(l1.getLanguage().orElse(null), l2.getLanguage().orElse(null));
+			}
+			if (v1 instanceof Literal) return 1;
+			if (v2 instanceof Literal) return -1;
+			return compareResources((Resource) v1, (Resource) v2);
+		}
+
+		private int compareStrings(String s1, String s2) {
+			if (s1 == null) return (s2 == null ? 0 : -1);
+			if (s2 == null) return 1;
+			return s1.compareTo(s2);
+		}
+
+		private String getDatatypeString(Literal l) {
+			if (l.getDatatype() == null) return null;
+			return l.getDatatype().stringValue();
+		}
+
+	};
+
+
+	/**
+	 * Encodes the statements as UTF-8 into a small buffer that is passed on to a message digest
+	 * or signature whenever it is full. Only used by a single thread.
+	 */
+	private static class DigestWriter {
+
+		private final byte[] buffer = new byte[8192];
+		private int pos = 0;
+		private MessageDigest md;
+		private Signature signature;
+		private ByteArrayOutputStream out;
+
+		void write(List<Statement> statements, MessageDigest md, Signature signature) throws SignatureException {
+			this.md = md;
+			this.signature = signature;
+			pos = 0;
+			try {
+				Statement[] sorted = statements.toArray(new Statement[statements.size()]);
+				Arrays.sort(sorted, statementComparator);
+				for (Statement st : sorted) {
+					writeValue(st.getContext());
+					writeValue(st.getSubject());
+					writeValue(st.getPredicate());
+					writeValue(st.getObject());
+				}
+				flush();
+			} finally {
+				this.md = null;
+				this.signature = null;
+				this.out = null;
+			}
+		}
+
+		byte[] getBytes(List<Statement> statements) throws SignatureException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			this.out = out;
+			write(statements, null, null);
+			return out.toByteArray();
+		}
+
+		private void writeValue(Value v) throws SignatureException {
+			if (v == null) {
+				// no context
+			} else if (v instanceof IRI) {
+				writeString(v.toString(), false);
+			} else if (v instanceof Literal) {
+				Literal l = (Literal) v;
+				if (l.getLanguage().isPresent()) {
+					writeByte('@');
+					writeString(l.getLanguage().get().toLowerCase(), false);
+					writeByte(' ');
+				} else if (l.getDatatype() != null && !l.getDatatype().equals(XMLSchema.STRING)) {
+					writeByte('^');
+					writeString(l.getDatatype().stringValue(), false);
+					writeByte(' ');
+				} else {
+					writeByte('#');
+				}
+				writeString(l.stringValue(), true);
+			} else if (v instanceof BNode) {
+				throw new RuntimeException("Unexpected blank node");
+			}
+			writeByte('\n');
+		}
+
+		private void writeString(String s, boolean escape) throws SignatureException {
+			int n = s.length();
+			for (int i = 0 ; i < n ; i++) {
+				char c = s.charAt(i);
+				if (c < 0x80) {
+					if (escape && c == '\\') {
+						writeByte('\\');
+						writeByte('\\');
+					} else if (escape && c == '\n') {
+						writeByte('\\');
+						writeByte('n');
+					} else {
+						writeByte(c);
+					}
+				} else if (c < 0x800) {
+					writeByte(0xc0 | (c >> 6));
+					writeByte(0x80 | (c & 0x3f));
+				} else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+					int cp = Character.toCodePoint(c, s.charAt(++i));
+					writeByte(0xf0 | (cp >> 18));
+					writeByte(0x80 | ((cp >> 12) & 0x3f));
+					writeByte(0x80 | ((cp >> 6) & 0x3f));
+					writeByte(0x80 | (cp & 0x3f));
+				} else if (Character.isSurrogate(c)) {
+					// Same replacement as in String.getBytes
+					writeByte('?');
+				} else {
+					writeByte(0xe0 | (c >> 12));
+					writeByte(0x80 | ((c >> 6) & 0x3f));
+					writeByte(0x80 | (c & 0x3f));
+				}
+			}
+		}
+
+		private void writeByte(int b) throws SignatureException {
+			if (pos == buffer.length) flush();
+			buffer[pos++] = (byte) b;
+		}
+
+		private void flush() throws SignatureException {
+			if (pos == 0) return;
+			if (md != null) md.update(buffer, 0, pos);
+			if (signature != null) signature.update(buffer, 0, pos);
+			if (out != null) out.write(buffer, 0, pos);
+			pos = 0;
+		}
+
+	}
+
+
+	private static boolean checkConsistency() {
+		try {
+			List<Statement> sample = getTestStatements();
+			String expected = RdfHasher.getDigestString(new ArrayList<>(sample));
+			String actual = new String(new DigestWriter().getBytes(sample), utf8);
+			if (!expected.equals(actual)) return false;
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			md.update(actual.getBytes(utf8));
+			String ac = RdfModule.MODULE_ID + getBase64(md.digest());
+			return ac.equals(RdfHasher.makeArtifactCode(new ArrayList<>(sample)));
+		} catch (Exception ex) {
+			return false;
+		}
+	}
+
+	private static List<Statement> getTestStatements() {
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		String ns = "http://example.org/np.RA 1234#";
+		IRI g1 = vf.createIRI(ns + "g1");
+		IRI g = vf.createIRI(ns + "g");
+		IRI s = vf.createIRI(ns + "s");
+		IRI s2 = vf.createIRI(ns + "s2");
+		IRI p = vf.createIRI(ns + "p");
+		IRI pA = vf.createIRI(ns + "P");
+		List<Statement> l = new ArrayList<>();
+		l.add(vf.createStatement(s2, p, vf.createLiteral("x"), g1));
+		l.add(vf.createStatement(s, p, vf.createLiteral("x", "EN-us"), g1));
+		l.add(vf.createStatement(s, p, vf.createLiteral("x", vf.createIRI(ns + "dt")), g1));
+		l.add(vf.createStatement(s, p, vf.createLiteral("x", XMLSchema.INT), g1));
+		l.add(vf.createStatement(s, p, vf.createLiteral("x"), g1));
+		l.add(vf.createStatement(s, p, vf.createLiteral("x", "de"), g1));
+		l.add(vf.createStatement(s, p, vf.createLiteral("A"), g1));
+		l.add(vf.createStatement(s, p, vf.createIRI("http://z.example.org/"), g1));
+		l.add(vf.createStatement(s, p, vf.createIRI("a:b"), g1));
+		l.add(vf.createStatement(s, pA, vf.createLiteral("line 1\nline 2 \\n \\\\ \r\t\""), g1));
+		l.add(vf.createStatement(s, pA, vf.createLiteral("\u00fc \u20ac \uD83D\uDE00 e\u0301"), g1));
+		l.add(vf.createStatement(s, p, s2, g));
+		l.add(vf.createStatement(s2, pA, s, g));
+		l.add(vf.createStatement(s, p, vf.createLiteral(""), g));
+		l.add(vf.createStatement(s, p, vf.createLiteral("1", XMLSchema.STRING), g));
+		return l;
+	}
+
+}
@@ -49,13 +49,17 @@ public class TempUriReplacer implements RDFHandler {
 
 	@Override
 	public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+		nestedHandler.handleNamespace(prefix, replaceNamespace(uri));
+	}
+
+	String replaceNamespace(String uri) {
 		if (uri.startsWith(uriPrefix)) {
 			uri = uri.replace(uriPrefix, normUri);
 		}
-		nestedHandler.handleNamespace(prefix, uri);
+		return uri;
 	}
 
-	private Value replace(Value v) {
+	Value replace(Value v) {
 		if (v instanceof IRI && v.stringValue().startsWith(uriPrefix)) {
 			IRI i = SimpleValueFactory.getInstance().createIRI(v.stringValue().replace(uriPrefix, normUri));
 			if (transformMap != null) transformMap.put((IRI) v, i);
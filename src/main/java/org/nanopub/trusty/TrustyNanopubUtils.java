@@ -43,7 +43,7 @@ public class TrustyNanopubUtils {
 		writer.handleNamespace("dce", "http://purl.org/dc/elements/1.1/");
 		writer.handleNamespace("pav", "http://swan.mindinformatics.org/ontologies/1.2/pav/");
 		writer.handleNamespace("np", "http://www.nanopub.org/nschema#");
-		for (Statement st : NanopubUtils.getStatements(nanopub)) {
+		for (Statement st : NanopubUtils.getUnmodifiableStatements(nanopub)) {
 			writer.handleStatement(st);
 		}
 		writer.endRDF();
@@ -59,7 +59,7 @@ public class TrustyNanopubUtils {
 //		System.err.print(RdfHasher.getDigestString(statements));
 //		System.err.println("---");
 
-		String ac = RdfHasher.makeArtifactCode(statements);
+		String ac = StreamingRdfHasher.makeArtifactCode(statements);
 		return ac.equals(artifactCode);
 	}
 
@@ -0,0 +1,78 @@
+package org.nanopub.trusty;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+
+/**
+ * Applies the replacements of a TempUriReplacer and a CrossRefResolver (each of them optional) in a
+ * single pass, with the same result as chaining the two. New statements are only created for
+ * statements that actually change.
+ */
+class UriRewriter implements RDFHandler {
+
+	private TempUriReplacer tempUriReplacer;
+	private CrossRefResolver crossRefResolver;
+	private RDFHandler nestedHandler;
+
+	/**
+	 * The given replacer and resolver are only used for their replacement functions; their own
+	 * nested handlers are not called.
+	 */
+	UriRewriter(TempUriReplacer tempUriReplacer, CrossRefResolver crossRefResolver, RDFHandler nestedHandler) {
+		this.tempUriReplacer = tempUriReplacer;
+		this.crossRefResolver = crossRefResolver;
+		this.nestedHandler = nestedHandler;
+	}
+
+	@Override
+	public void handleStatement(Statement st) throws RDFHandlerException {
+		Resource subj = st.getSubject();
+		IRI pred = st.getPredicate();
+		Value obj = st.getObject();
+		Resource context = st.getContext();
+		Resource newSubj = (Resource) replace(subj);
+		IRI newPred = (IRI) replace(pred);
+		Value newObj = replace(obj);
+		Resource newContext = (Resource) replace(context);
+		if (newSubj == subj && newPred == pred && newObj == obj && newContext == context) {
+			nestedHandler.handleStatement(st);
+		} else {
+			nestedHandler.handleStatement(SimpleValueFactory.getInstance().createStatement(newSubj, newPred, newObj, newContext));
+		}
+	}
+
+	@Override
+	public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+		if (tempUriReplacer != null) uri = tempUriReplacer.replaceNamespace(uri);
+		if (crossRefResolver != null) uri = crossRefResolver.replaceNamespace(uri);
+		nestedHandler.handleNamespace(prefix, uri);
+	}
+
+	private Value replace(Value v) {
+		if (!(v instanceof Resource)) return v;
+		if (tempUriReplacer != null) v = tempUriReplacer.replace(v);
+		if (crossRefResolver != null) v = crossRefResolver.replace(v);
+		return v;
+	}
+
+	@Override
+	public void startRDF() throws RDFHandlerException {
+		nestedHandler.startRDF();
+	}
+
+	@Override
+	public void endRDF() throws RDFHandlerException {
+		nestedHandler.endRDF();
+	}
+
+	@Override
+	public void handleComment(String comment) throws RDFHandlerException {
+		nestedHandler.handleComment(comment);
+	}
+
+}
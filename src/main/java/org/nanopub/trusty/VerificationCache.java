@@ -0,0 +1,238 @@
+package org.nanopub.trusty;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import net.trustyuri.TrustyUriUtils;
+import net.trustyuri.rdf.RdfModule;
+
+/**
+ * Remembers the artifact codes of nanopubs that have been fully verified (trusty URI and, if
+ * present, signature), so that the same content does not need to be hashed again. Each entry is
+ * tied to an artifact code and a source, which describes the state of the local file the nanopub
+ * was read from (see getSource). Changing the file therefore invalidates its entries. The entries
+ * are kept in a memory-mapped file as an open-addressing hash set: each entry consists of the first
+ * 15 bytes of the SHA-256 hash of artifact code and source and one byte for the verification
+ * result. Entries are never removed, and the file is rebuilt with twice the size when it gets half
+ * full.
+ *
+ * Note that a cache hit only tells that content with this artifact code has been verified before
+ * in a file with the same path, size, and modification time. This cache should therefore only be
+ * used when re-checking local files, and never for content that is downloaded from a server.
+ */
+public class VerificationCache implements Closeable {
+
+	public static final byte TRUSTY = 1;
+	public static final byte SIGNED = 2;
+	public static final byte LEGACY_SIGNED = 3;
+
+	private static final int MAGIC = 0x4e505643;  // "NPVC"
+	private static final int headerSize = 16;
+	private static final int entrySize = 16;
+	private static final int initialCapacity = 1 << 16;
+
+	public static File getDefaultFile() {
+		return new File(System.getProperty("user.home") + "/.nanopub/verified-artifact-codes");
+	}
+
+	/**
+	 * Returns the source string for nanopubs read from the given file, consisting of its canonical
+	 * path, its size, and its last modification time.
+	 */
+	public static String getSource(File file) {
+		String path;
+		try {
+			path = file.getCanonicalPath();
+		} catch (IOException ex) {
+			path = file.getAbsolutePath();
+		}
+		return path + ":" + file.length() + ":" + file.lastModified();
+	}
+
+	private final File file;
+	private RandomAccessFile raf;
+	private MappedByteBuffer buffer;
+	private int capacity;
+	private int size;
+	private boolean forceVerification = false;
+
+	public VerificationCache() throws IOException {
+		this(getDefaultFile());
+	}
+
+	public VerificationCache(File file) throws IOException {
+		this.file = file;
+		if (file.getParentFile() != null) file.getParentFile().mkdirs();
+		open();
+	}
+
+	private void open() throws IOException {
+		raf = new RandomAccessFile(file, "rw");
+		if (raf.length() == 0) {
+			capacity = initialCapacity;
+			size = 0;
+			map();
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, capacity);
+			buffer.putInt(8, 0);
+		} else {
+			if (raf.length() < headerSize || raf.readInt() != MAGIC) {
+				raf.close();
+				throw new IOException("Not a verification cache file: " + file);
+			}
+			capacity = raf.readInt();
+			size = raf.readInt();
+			if (Integer.bitCount(capacity) != 1 || raf.length() != headerSize + (long) capacity * entrySize) {
+				raf.close();
+				throw new IOException("Corrupt verification cache file: " + file);
+			}
+			map();
+		}
+	}
+
+	private void map() throws IOException {
+		buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, headerSize + (long) capacity * entrySize);
+	}
+
+	/**
+	 * If set to true, all nanopubs are treated as not yet verified (so they get verified again),
+	 * but new results are still added to the cache.
+	 */
+	public void setForceVerification(boolean forceVerification) {
+		this.forceVerification = forceVerification;
+	}
+
+	public boolean isForceVerification() {
+		return forceVerification;
+	}
+
+	/**
+	 * Returns the stored verification result for the given artifact code and source (TRUSTY,
+	 * SIGNED, or LEGACY_SIGNED), or 0 if it is not in the cache or if verification is forced.
+	 */
+	public synchronized byte getStatus(String artifactCode, String source) {
+		if (forceVerification || buffer == null) return 0;
+		long[] key = getKey(artifactCode, source);
+		if (key == null) return 0;
+		int slot = findSlot(key[0], key[1]);
+		return (byte) buffer.getLong(getPosition(slot) + 8);
+	}
+
+	public boolean isVerified(String artifactCode, String source) {
+		return getStatus(artifactCode, source) != 0;
+	}
+
+	public synchronized void add(String artifactCode, String source, byte status) throws IOException {
+		if (status == 0 || buffer == null) return;
+		long[] key = getKey(artifactCode, source);
+		if (key == null) return;
+		int slot = findSlot(key[0], key[1]);
+		int pos = getPosition(slot);
+		boolean isNew = (buffer.getLong(pos) == 0 && buffer.getLong(pos + 8) == 0);
+		buffer.putLong(pos, key[0]);
+		buffer.putLong(pos + 8, key[1] | (status & 0xffl));
+		if (isNew) {
+			size++;
+			buffer.putInt(8, size);
+			if (size * 2 > capacity) grow();
+		}
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized void flush() {
+		if (buffer != null) buffer.force();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (buffer == null) return;
+		buffer.force();
+		buffer = null;
+		raf.close();
+	}
+
+	// Returns the slot with the given key, or the empty slot where it would go:
+	private int findSlot(long k1, long k2) {
+		int mask = capacity - 1;
+		int slot = (int) (k1 ^ (k1 >>> 32)) & mask;
+		while (true) {
+			int pos = getPosition(slot);
+			long e1 = buffer.getLong(pos);
+			long e2 = buffer.getLong(pos + 8);
+			if (e1 == 0 && e2 == 0) return slot;
+			if (e1 == k1 && (e2 & ~0xffl) == k2) return slot;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private static int getPosition(int slot) {
+		return headerSize + slot * entrySize;
+	}
+
+	private void grow() throws IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		tempFile.delete();
+		MappedByteBuffer oldBuffer = buffer;
+		int oldCapacity = capacity;
+		RandomAccessFile oldRaf = raf;
+		raf = new RandomAccessFile(tempFile, "rw");
+		capacity = oldCapacity * 2;
+		map();
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, capacity);
+		buffer.putInt(8, size);
+		for (int i = 0 ; i < oldCapacity ; i++) {
+			int oldPos = getPosition(i);
+			long e1 = oldBuffer.getLong(oldPos);
+			long e2 = oldBuffer.getLong(oldPos + 8);
+			if (e1 == 0 && e2 == 0) continue;
+			int pos = getPosition(findSlot(e1, e2 & ~0xffl));
+			buffer.putLong(pos, e1);
+			buffer.putLong(pos + 8, e2);
+		}
+		buffer.force();
+		raf.close();
+		oldRaf.close();
+		buffer = null;
+		if (!tempFile.renameTo(file)) {
+			file.delete();
+			if (!tempFile.renameTo(file)) {
+				throw new IOException("Failed to replace verification cache file: " + file);
+			}
+		}
+		open();
+	}
+
+	// The key consists of the first 15 bytes of the SHA-256 hash of artifact code and source:
+	private static long[] getKey(String artifactCode, String source) {
+		if (artifactCode == null || !artifactCode.startsWith(RdfModule.MODULE_ID)) return null;
+		if (!TrustyUriUtils.isPotentialArtifactCode(artifactCode)) return null;
+		if (source == null) return null;
+		byte[] hash;
+		try {
+			hash = MessageDigest.getInstance("SHA-256").digest((artifactCode + "\n" + source).getBytes("UTF-8"));
+		} catch (NoSuchAlgorithmException | UnsupportedEncodingException ex) {
+			throw new RuntimeException(ex);
+		}
+		long k1 = 0, k2 = 0;
+		for (int i = 0 ; i < 8 ; i++) {
+			k1 = (k1 << 8) | (hash[i] & 0xff);
+		}
+		for (int i = 8 ; i < 15 ; i++) {
+			k2 = (k2 << 8) | (hash[i] & 0xff);
+		}
+		k2 = k2 << 8;
+		return new long[] { k1, k2 };
+	}
+
+}
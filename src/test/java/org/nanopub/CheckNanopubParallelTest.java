@@ -0,0 +1,38 @@
+package org.nanopub;
+
+import java.io.File;
+
+import org.junit.Test;
+import org.nanopub.CheckNanopub.Report;
+
+public class CheckNanopubParallelTest {
+
+	@Test
+	public void runTest() throws Exception {
+		for (String dir : new String[] { "valid", "invalid" }) {
+			File testSuiteDir = new File("src/main/resources/testsuite/" + dir + "/");
+			for (File testFile : testSuiteDir.listFiles()) {
+				testParallel(testFile);
+			}
+		}
+	}
+
+	public void testParallel(File file) throws Exception {
+		String summary = getSummary(file, 1);
+		for (int threads = 2 ; threads <= 8 ; threads *= 2) {
+			assert summary.equals(getSummary(file, threads)) : file;
+		}
+	}
+
+	private static String getSummary(File file, int threads) {
+		CheckNanopub c = new CheckNanopub(file.getPath());
+		c.setThreadCount(threads);
+		try {
+			Report report = c.check();
+			return report.getSummary();
+		} catch (Exception ex) {
+			return "exception: " + ex.getClass().getName();
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package org.nanopub;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.rio.ParserConfig;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.Test;
+import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+
+public class InterningValueFactoryTest {
+
+	private static final String createdIri = "http://purl.org/dc/terms/created";
+	private static final String createdByIri = "http://purl.org/pav/createdBy";
+
+	@Test
+	public void testFactory() throws Exception {
+		InterningValueFactory vf = InterningValueFactory.getInstance();
+		assert vf.createIRI("http://example.org/a") == vf.createIRI("http://example.org/a");
+		assert vf.createIRI("http://example.org/", "a") == vf.createIRI("http://example.org/a");
+		assert vf.createLiteral("abc") == vf.createLiteral("abc");
+		assert vf.createLiteral("abc", "en") == vf.createLiteral("abc", "en");
+		assert vf.createLiteral("abc", XMLSchema.TOKEN) == vf.createLiteral("abc", XMLSchema.TOKEN);
+		assert !vf.createLiteral("abc", "en").equals(vf.createLiteral("abc"));
+		assert !vf.createLiteral("abc", XMLSchema.TOKEN).equals(vf.createLiteral("abc"));
+		assert vf.createLiteral("abc").getDatatype().equals(XMLSchema.STRING);
+	}
+
+	@Test
+	public void testParsing() throws Exception {
+		File file = new File("src/main/resources/testsuite/valid/3nanopubs.trig");
+		List<Nanopub> plain = read(file, false);
+		List<Nanopub> interned = read(file, true);
+		assert plain.size() == 3;
+		assert interned.size() == 3;
+
+		for (int i = 0 ; i < plain.size() ; i++) {
+			List<Statement> expected = NanopubUtils.getStatements(plain.get(i));
+			List<Statement> actual = NanopubUtils.getStatements(interned.get(i));
+			assert expected.size() == actual.size();
+			for (int j = 0 ; j < expected.size() ; j++) {
+				// Statement.equals ignores the context, so it is compared separately:
+				assert expected.get(j).equals(actual.get(j));
+				assert expected.get(j).getContext().equals(actual.get(j).getContext());
+			}
+		}
+
+		// The same terms in different nanopubs are the same objects:
+		Value created1 = getObject(interned.get(0), createdIri);
+		assert created1 == getObject(interned.get(1), createdIri);
+		assert created1 == getObject(interned.get(2), createdIri);
+		Value creator1 = getObject(interned.get(0), createdByIri);
+		assert creator1 == getObject(interned.get(1), createdByIri);
+		assert creator1 == getObject(interned.get(2), createdByIri);
+		assert getPredicate(interned.get(0), createdIri) == getPredicate(interned.get(1), createdIri);
+	}
+
+	private static List<Nanopub> read(File file, boolean intern) throws Exception {
+		final List<Nanopub> nanopubs = new ArrayList<>();
+		ParserConfig config = new ParserConfig();
+		config.set(NanopubParserSettings.INTERN_VALUES, intern);
+		InputStream in = new FileInputStream(file);
+		try {
+			MultiNanopubRdfHandler.process(RDFFormat.TRIG, in, new NanopubHandler() {
+				@Override
+				public void handleNanopub(Nanopub np) {
+					nanopubs.add(np);
+				}
+			}, config);
+		} finally {
+			in.close();
+		}
+		return nanopubs;
+	}
+
+	private static Value getObject(Nanopub np, String predicate) {
+		return getStatement(np, predicate).getObject();
+	}
+
+	private static IRI getPredicate(Nanopub np, String predicate) {
+		return getStatement(np, predicate).getPredicate();
+	}
+
+	private static Statement getStatement(Nanopub np, String predicate) {
+		for (Statement st : np.getPubinfo()) {
+			if (st.getPredicate().stringValue().equals(predicate)) return st;
+		}
+		throw new RuntimeException("Statement not found: " + predicate);
+	}
+
+}
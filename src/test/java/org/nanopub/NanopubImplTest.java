@@ -0,0 +1,31 @@
+package org.nanopub;
+
+import java.io.File;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.junit.Test;
+
+public class NanopubImplTest {
+
+	private static final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	@Test
+	public void testContainsWithoutContext() throws Exception {
+		Nanopub np = new NanopubImpl(new File("src/main/resources/testsuite/valid/simple1.trig"));
+		IRI exampleNanopubType = vf.createIRI("http://purl.org/nanopub/x/ExampleNanopub");
+		// This is how Filter.isExampleNanopub checks the type:
+		assert np.getPubinfo().contains(vf.createStatement(np.getUri(), RDF.TYPE, exampleNanopubType));
+		assert np.getPubinfo().contains(vf.createStatement(np.getUri(), RDF.TYPE, exampleNanopubType, np.getPubinfoUri()));
+		assert !np.getAssertion().contains(vf.createStatement(np.getUri(), RDF.TYPE, exampleNanopubType));
+		assert !np.getPubinfo().contains(vf.createStatement(np.getUri(), RDF.TYPE, RDF.PROPERTY));
+		for (Statement st : np.getAssertion()) {
+			assert np.getAssertion().contains(vf.createStatement(st.getSubject(), st.getPredicate(), st.getObject()));
+			assert np.getAssertion().contains(st);
+		}
+	}
+
+}
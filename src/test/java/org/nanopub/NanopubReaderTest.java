@@ -0,0 +1,116 @@
+package org.nanopub;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.RDF4JException;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.Test;
+import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+
+public class NanopubReaderTest {
+
+	@Test
+	public void testOrder() throws Exception {
+		File testSuiteValidDir = new File("src/main/resources/testsuite/valid/");
+		for (File testFile : testSuiteValidDir.listFiles()) {
+			List<String> expected = readSequentially(testFile);
+			List<String> actual = new ArrayList<>();
+			NanopubReader reader = new NanopubReader(testFile);
+			try {
+				for (Nanopub np : reader) {
+					actual.add(np.getUri().stringValue());
+				}
+			} finally {
+				reader.close();
+			}
+			assert expected.equals(actual);
+		}
+	}
+
+	@Test
+	public void testMalformedNanopub() throws Exception {
+		NanopubReader reader = new NanopubReader(new File("src/main/resources/testsuite/invalid/valid_invalid1.trig"));
+		try {
+			assert reader.read() != null;
+			assert reader.read() != null;
+			try {
+				reader.read();
+				assert false;
+			} catch (MalformedNanopubException ex) {
+				// expected
+			}
+			assert reader.read() == null;
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testParseError() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeNanopubs(new File("src/main/resources/testsuite/valid/simple1.trig"), out, 1);
+		// The statement in the new graph completes the first nanopub, and then the syntax error follows:
+		out.write(("<http://example.org/broken> {\n" +
+				"<http://example.org/a> <http://example.org/b> <http://example.org/c> .\n" +
+				"<http://example.org/a> <http://example.org/b> \"unterminated\n").getBytes("UTF-8"));
+		NanopubReader reader = new NanopubReader(RDFFormat.TRIG, new ByteArrayInputStream(out.toByteArray()));
+		int count = 0;
+		try {
+			for (@SuppressWarnings("unused") Nanopub np : reader) {
+				count++;
+			}
+			assert false;
+		} catch (RDF4JException | NanopubReader.NanopubReaderException ex) {
+			// expected
+		} finally {
+			reader.close();
+		}
+		assert count == 1;
+	}
+
+	@Test
+	public void testEarlyClose() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeNanopubs(new File("src/main/resources/testsuite/valid/3nanopubs.trig"), out, 20);
+		NanopubReader reader = new NanopubReader(RDFFormat.TRIG, new ByteArrayInputStream(out.toByteArray()), 1);
+		assert reader.read() != null;
+		// Give the parser time to fill the buffer and block:
+		Thread.sleep(200);
+		assert reader.getParserThread().isAlive();
+		reader.close();
+		reader.getParserThread().join(5000);
+		assert !reader.getParserThread().isAlive();
+		assert reader.read() == null;
+	}
+
+	private static List<String> readSequentially(File file) throws Exception {
+		final List<String> uris = new ArrayList<>();
+		MultiNanopubRdfHandler.process(file, new NanopubHandler() {
+			@Override
+			public void handleNanopub(Nanopub np) {
+				uris.add(np.getUri().stringValue());
+			}
+		});
+		return uris;
+	}
+
+	private static void writeNanopubs(File file, final ByteArrayOutputStream out, int repetitions) throws Exception {
+		for (int i = 0; i < repetitions; i++) {
+			MultiNanopubRdfHandler.process(file, new NanopubHandler() {
+				@Override
+				public void handleNanopub(Nanopub np) {
+					try {
+						NanopubUtils.writeToStream(np, out, RDFFormat.TRIG);
+					} catch (Exception ex) {
+						throw new RuntimeException(ex);
+					}
+				}
+			});
+		}
+	}
+
+}
@@ -0,0 +1,171 @@
+package org.nanopub;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.Test;
+import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+
+public class NquadsChunkProcessorTest {
+
+	@Test
+	public void runTest() throws Exception {
+		File testSuiteValidDir = new File("src/main/resources/testsuite/valid/");
+		for (File testFile : testSuiteValidDir.listFiles()) {
+			if (testFile.getName().endsWith(".nq")) {
+				testChunked(testFile, 1);
+			}
+			File nqFile = toNquads(testFile, false);
+			File tabbedNqFile = toNquads(testFile, true);
+			try {
+				testChunked(nqFile, 2);
+				testChunked(tabbedNqFile, 2);
+			} finally {
+				nqFile.delete();
+				tabbedNqFile.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testTerms() throws Exception {
+		String[] terms = NquadsChunkProcessor.getTerms(
+				"<http://example.org/np>\t<http://www.w3.org/1999/02/22-rdf-syntax-ns#type><http://www.nanopub.org/nschema#Nanopublication>  <http://example.org/head> .");
+		assert "http://example.org/np".equals(terms[0]);
+		assert NquadsChunkProcessor.isNanopubTypeStatement(terms);
+		assert "http://example.org/head".equals(NquadsChunkProcessor.getContext(
+				"<http://example.org/np>\t<http://example.org/p>\t\"x y\"\t<http://example.org/head>\t.\t"));
+		terms = NquadsChunkProcessor.getTerms("_:b1 <http://example.org/p> \"<http://example.org/o>\" <http://example.org/g> .");
+		assert "_:b1".equals(terms[0]);
+		assert terms[2] == null;
+	}
+
+	@Test
+	public void testBoundaries() throws Exception {
+		testBoundaries(false);
+		testBoundaries(true);
+	}
+
+	// Checks that a cut anywhere in the head, assertion, provenance, or pubinfo graph of a nanopub
+	// is moved to the start of one of the next nanopubs (a nanopub that starts right after the cut
+	// can be skipped too, as it isn't known whether the cut is in one of its graphs):
+	private void testBoundaries(boolean headLast) throws Exception {
+		Nanopub np = new NanopubImpl(new File("src/main/resources/testsuite/valid/simple1.trig"));
+		String template = NanopubUtils.writeToString(np, RDFFormat.NQUADS);
+		if (headLast) {
+			// Move the head graph to the end of the nanopub:
+			StringBuilder head = new StringBuilder();
+			StringBuilder rest = new StringBuilder();
+			for (String line : template.split("\n")) {
+				if (line.endsWith("<" + np.getHeadUri() + "> .")) {
+					head.append(line + "\n");
+				} else {
+					rest.append(line + "\n");
+				}
+			}
+			template = rest.toString() + head.toString();
+		}
+		List<Long> starts = new ArrayList<>();
+		File nqFile = File.createTempFile("nanopub-chunk-test", ".nq");
+		OutputStream out = new FileOutputStream(nqFile);
+		long length = 0;
+		try {
+			for (int i = 0 ; i < 5 ; i++) {
+				byte[] bytes = template.replace("http://example.org/nanopub-validator-example/", "http://example.org/np" + i + "/").getBytes("UTF-8");
+				starts.add(length);
+				out.write(bytes);
+				length += bytes.length;
+			}
+		} finally {
+			out.close();
+		}
+		try {
+			starts.add(length);
+			Set<String> graphs = new HashSet<>();
+			for (int i = 0 ; i < 5 ; i++) {
+				for (long pos = starts.get(i) + 1 ; pos <= starts.get(i + 1) ; pos++) {
+					long b = NquadsChunkProcessor.findNanopubStart(nqFile, pos);
+					assert b >= pos && starts.indexOf(b) > i && starts.indexOf(b) <= i + 2 : "cut at " + pos + " moved to " + b;
+				}
+			}
+			// The cuts above are in all four graphs:
+			for (String line : template.split("\n")) {
+				graphs.add(NquadsChunkProcessor.getContext(line));
+			}
+			assert graphs.size() == 4;
+		} finally {
+			nqFile.delete();
+		}
+	}
+
+	private static void testChunked(File file, int minChunks) throws Exception {
+		final List<String> sequential = new ArrayList<>();
+		MultiNanopubRdfHandler.process(RDFFormat.NQUADS, file, new NanopubHandler() {
+			@Override
+			public void handleNanopub(Nanopub np) {
+				sequential.add(np.getUri().stringValue() + " " + np.getTripleCount());
+			}
+		});
+		Collections.sort(sequential);
+
+		for (int threadCount = 2 ; threadCount <= 8 ; threadCount *= 2) {
+			if (minChunks > 1) {
+				assert NquadsChunkProcessor.getChunkBoundaries(file, threadCount).size() > minChunks;
+			}
+			final List<String> chunked = Collections.synchronizedList(new ArrayList<String>());
+			NquadsChunkProcessor.process(file, new NanopubHandler() {
+				@Override
+				public void handleNanopub(Nanopub np) {
+					chunked.add(np.getUri().stringValue() + " " + np.getTripleCount());
+				}
+			}, threadCount);
+			List<String> sortedChunked = new ArrayList<>(chunked);
+			Collections.sort(sortedChunked);
+			assert sequential.equals(sortedChunked);
+		}
+	}
+
+	// Writes copies of the nanopubs of the given file to an N-Quads file, so it can be split. The
+	// copies get different nanopub and graph URIs, so they don't merge into one nanopub.
+	private static File toNquads(File file, final boolean tabs) throws Exception {
+		File nqFile = File.createTempFile("nanopub-chunk-test", ".nq");
+		final OutputStream out = new FileOutputStream(nqFile);
+		try {
+			for (int i = 0 ; i < 50 ; i++) {
+				final String suffix = "_" + i;
+				MultiNanopubRdfHandler.process(file, new NanopubHandler() {
+					@Override
+					public void handleNanopub(Nanopub np) {
+						Set<String> uris = new HashSet<>();
+						uris.add(np.getUri().stringValue());
+						uris.add(np.getHeadUri().stringValue());
+						uris.add(np.getAssertionUri().stringValue());
+						uris.add(np.getProvenanceUri().stringValue());
+						uris.add(np.getPubinfoUri().stringValue());
+						try {
+							String s = NanopubUtils.writeToString(np, RDFFormat.NQUADS);
+							for (String uri : uris) {
+								s = s.replace("<" + uri + ">", "<" + uri + suffix + ">");
+							}
+							if (tabs) s = s.replace("> ", ">\t");
+							out.write(s.getBytes("UTF-8"));
+						} catch (Exception ex) {
+							throw new RuntimeException(ex);
+						}
+					}
+				});
+			}
+		} finally {
+			out.close();
+		}
+		return nqFile;
+	}
+
+}
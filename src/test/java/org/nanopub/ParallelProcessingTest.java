@@ -0,0 +1,99 @@
+package org.nanopub;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+import org.nanopub.MultiNanopubRdfHandler.TwoStepNanopubHandler;
+
+public class ParallelProcessingTest {
+
+	@Test
+	public void runTest() throws Exception {
+		File testSuiteValidDir = new File("src/main/resources/testsuite/valid/");
+		for (File testFile : testSuiteValidDir.listFiles()) {
+			testParallel(testFile);
+		}
+	}
+
+	public void testParallel(File file) throws Exception {
+		final List<String> sequential = new ArrayList<>();
+		MultiNanopubRdfHandler.process(file, new NanopubHandler() {
+			@Override
+			public void handleNanopub(Nanopub np) {
+				sequential.add(np.getUri().stringValue());
+			}
+		});
+
+		final List<String> ordered = new ArrayList<>();
+		MultiNanopubRdfHandler.process(file, new NanopubHandler() {
+			@Override
+			public void handleNanopub(Nanopub np) {
+				ordered.add(np.getUri().stringValue());
+			}
+		}, 4, true);
+		assert sequential.equals(ordered);
+
+		final List<String> unordered = Collections.synchronizedList(new ArrayList<String>());
+		MultiNanopubRdfHandler.process(file, new NanopubHandler() {
+			@Override
+			public void handleNanopub(Nanopub np) {
+				unordered.add(np.getUri().stringValue());
+			}
+		}, 4, false);
+		List<String> sortedSequential = new ArrayList<>(sequential);
+		Collections.sort(sortedSequential);
+		List<String> sortedUnordered = new ArrayList<>(unordered);
+		Collections.sort(sortedUnordered);
+		assert sortedSequential.equals(sortedUnordered);
+	}
+
+	@Test
+	public void testTwoStep() throws Exception {
+		File file = new File("src/main/resources/testsuite/valid/3nanopubs.trig");
+		final List<String> sequential = new ArrayList<>();
+		MultiNanopubRdfHandler.process(file, new NanopubHandler() {
+			@Override
+			public void handleNanopub(Nanopub np) {
+				sequential.add(np.getUri().stringValue());
+			}
+		});
+		assert sequential.size() == 3;
+
+		// Each prepare call waits for all others, which only works if they run at the same time
+		// also when the order is kept:
+		final CountDownLatch latch = new CountDownLatch(3);
+		final List<String> ordered = new ArrayList<>();
+		MultiNanopubRdfHandler.process(file, new TwoStepNanopubHandler<String>() {
+
+			private boolean running = false;
+
+			@Override
+			public String prepare(Nanopub np) {
+				latch.countDown();
+				try {
+					if (!latch.await(10, TimeUnit.SECONDS)) throw new RuntimeException("prepare not run in parallel");
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+				return np.getUri().stringValue();
+			}
+
+			@Override
+			public void handlePrepared(Nanopub np, String uri) {
+				assert !running;
+				running = true;
+				ordered.add(uri);
+				running = false;
+			}
+
+		}, 4, true);
+		assert sequential.equals(ordered);
+	}
+
+}
@@ -0,0 +1,72 @@
+package org.nanopub;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.Test;
+import org.nanopub.MultiNanopubRdfHandler.NanopubHandler;
+import org.nanopub.trusty.MakeTrustyNanopub;
+import org.nanopub.trusty.ParallelTrustyTransformer;
+
+public class ParallelTrustyTransformTest {
+
+	@Test
+	public void runTest() throws Exception {
+		testParallel("http://purl.org/nanopub/temp/np", false);
+		testParallel("http://example.org/np", true);
+	}
+
+	public void testParallel(String uriBase, boolean prefixBased) throws Exception {
+		final List<Nanopub> nanopubs = new ArrayList<>();
+		MultiNanopubRdfHandler.process(RDFFormat.TRIG, new ByteArrayInputStream(makeInput(uriBase, 40).getBytes("UTF-8")), new NanopubHandler() {
+			@Override
+			public void handleNanopub(Nanopub np) {
+				nanopubs.add(np);
+			}
+		});
+
+		Map<Resource,IRI> tempRefMap = new HashMap<>();
+		Map<String,String> tempPrefixMap = (prefixBased ? new HashMap<String,String>() : null);
+		List<Nanopub> sequential = new ArrayList<>();
+		for (Nanopub np : nanopubs) {
+			sequential.add(MakeTrustyNanopub.transform(np, tempRefMap, tempPrefixMap));
+		}
+
+		ParallelTrustyTransformer transformer = new ParallelTrustyTransformer(true, prefixBased, 4);
+		List<Nanopub> parallel = transformer.transform(nanopubs);
+		assert !transformer.wasSequential();
+		assert parallel.size() == sequential.size();
+		for (int i = 0 ; i < sequential.size() ; i++) {
+			assert parallel.get(i).getUri().equals(sequential.get(i).getUri());
+			assert new HashSet<>(NanopubUtils.getStatements(parallel.get(i))).equals(new HashSet<>(NanopubUtils.getStatements(sequential.get(i))));
+		}
+	}
+
+	// Every third nanopub refers to the one three positions before:
+	private static String makeInput(String uriBase, int count) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("@prefix np: <http://www.nanopub.org/nschema#> .\n");
+		sb.append("@prefix ex: <http://example.org/> .\n");
+		for (int i = 0 ; i < count ; i++) {
+			String u = "<" + uriBase + i + "/";
+			sb.append(u + "Head> { " + u + "> a np:Nanopublication ; np:hasAssertion " + u + "assertion> ; ");
+			sb.append("np:hasProvenance " + u + "provenance> ; np:hasPublicationInfo " + u + "pubinfo> . }\n");
+			sb.append(u + "assertion> { " + u + "thing> ex:value \"" + i + "\" . ");
+			if (i % 3 == 0 && i >= 3) {
+				sb.append(u + "thing> ex:refersTo <" + uriBase + (i - 3) + "/thing> . ");
+			}
+			sb.append("}\n");
+			sb.append(u + "provenance> { " + u + "assertion> ex:source ex:test . }\n");
+			sb.append(u + "pubinfo> { " + u + "> ex:createdBy ex:test . }\n");
+		}
+		return sb.toString();
+	}
+
+}
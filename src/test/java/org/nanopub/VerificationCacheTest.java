@@ -0,0 +1,62 @@
+package org.nanopub;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import org.junit.Test;
+import org.nanopub.trusty.VerificationCache;
+
+public class VerificationCacheTest {
+
+	@Test
+	public void runTest() throws Exception {
+		File file = File.createTempFile("verification-cache", ".bin");
+		file.delete();
+		try {
+			String source = "/tmp/nanopubs.trig:12345:1500000000000";
+			int n = 40000;  // enough to grow the initial table
+			VerificationCache cache = new VerificationCache(file);
+			for (int i = 0 ; i < n ; i += 2) {
+				cache.add(getArtifactCode(i), source, (i % 3 == 0 ? VerificationCache.SIGNED : VerificationCache.TRUSTY));
+			}
+			assert cache.size() == n / 2;
+			cache.close();
+
+			cache = new VerificationCache(file);
+			assert cache.size() == n / 2;
+			for (int i = 0 ; i < n ; i++) {
+				byte expected = (i % 2 == 1 ? 0 : (i % 3 == 0 ? VerificationCache.SIGNED : VerificationCache.TRUSTY));
+				assert cache.getStatus(getArtifactCode(i), source) == expected;
+			}
+			assert !cache.isVerified("not an artifact code", source);
+			assert !cache.isVerified(getArtifactCode(0), null);
+			// A changed file has a different source, so its entries are no longer found:
+			File npFile = File.createTempFile("verification-cache", ".trig");
+			try {
+				String npSource = VerificationCache.getSource(npFile);
+				cache.add(getArtifactCode(0), npSource, VerificationCache.TRUSTY);
+				assert cache.isVerified(getArtifactCode(0), npSource);
+				FileOutputStream out = new FileOutputStream(npFile);
+				out.write(1);
+				out.close();
+				assert !npSource.equals(VerificationCache.getSource(npFile));
+				assert !cache.isVerified(getArtifactCode(0), VerificationCache.getSource(npFile));
+			} finally {
+				npFile.delete();
+			}
+			cache.setForceVerification(true);
+			assert !cache.isVerified(getArtifactCode(0), source);
+			cache.close();
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static String getArtifactCode(int i) throws Exception {
+		byte[] hash = MessageDigest.getInstance("SHA-256").digest(("np" + i).getBytes("UTF-8"));
+		return "RA" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+	}
+
+}
@@ -0,0 +1,87 @@
+package org.nanopub.extra.security;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Arrays;
+
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.junit.Assume;
+import org.junit.Test;
+import org.nanopub.Nanopub;
+import org.nanopub.NanopubReader;
+
+public class SignNanopubTest {
+
+	@Test
+	public void testThreads() throws Exception {
+		File dir = Files.createTempDirectory("nanopub-sign-test").toFile();
+		File inputFile = new File("src/main/resources/testsuite/valid/3nanopubs.trig");
+		File out1 = new File(dir, "out1.trig");
+		File out4 = new File(dir, "out4.trig");
+		try {
+			// RSA signatures don't depend on random numbers, so the outputs must be the same:
+			MakeKeys.make(dir.getPath() + "/id", SignatureAlgorithm.RSA);
+			String keyFile = dir.getPath() + "/id_rsa";
+			SignNanopub.run("-k", keyFile, "-o", out1.getPath(), inputFile.getPath());
+			SignNanopub.run("-k", keyFile, "-o", out4.getPath(), "--threads", "4", inputFile.getPath());
+			byte[] content = Files.readAllBytes(out1.toPath());
+			assert content.length > 0;
+			assert Arrays.equals(content, Files.readAllBytes(out4.toPath()));
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testEd25519() throws Exception {
+		try {
+			KeyPairGenerator.getInstance(SignatureAlgorithm.ED25519.getKeyAlgorithmName());
+			Signature.getInstance(SignatureAlgorithm.ED25519.getSignatureAlgorithmName());
+		} catch (GeneralSecurityException ex) {
+			Assume.assumeNoException("No Ed25519 provider available", ex);
+		}
+		File dir = Files.createTempDirectory("nanopub-sign-test").toFile();
+		File inputFile = new File("src/main/resources/testsuite/valid/3nanopubs.trig");
+		File outFile = new File(dir, "out.trig");
+		try {
+			MakeKeys.make(dir.getPath() + "/id", SignatureAlgorithm.ED25519);
+			String keyFile = dir.getPath() + "/id_ed25519";
+			SignNanopub.run("-k", keyFile, "-o", outFile.getPath(), inputFile.getPath());
+			int count = 0;
+			NanopubReader reader = new NanopubReader(outFile);
+			try {
+				for (Nanopub np : reader) {
+					NanopubSignatureElement se = SignatureUtils.getSignatureElement(np);
+					assert se.getAlgorithm() == SignatureAlgorithm.ED25519;
+					assert SignatureUtils.hasValidSignature(se);
+					count++;
+				}
+			} finally {
+				reader.close();
+			}
+			assert count == 3;
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testEd25519Literal() throws Exception {
+		NanopubSignatureElement se = new NanopubSignatureElement(null, null);
+		se.setAlgorithm(SimpleValueFactory.getInstance().createLiteral(SignatureAlgorithm.ED25519.name()));
+		assert se.getAlgorithm() == SignatureAlgorithm.ED25519;
+		se = new NanopubSignatureElement(null, null);
+		se.setAlgorithm(SimpleValueFactory.getInstance().createLiteral("Ed25519"));
+		assert se.getAlgorithm() == SignatureAlgorithm.ED25519;
+	}
+
+}
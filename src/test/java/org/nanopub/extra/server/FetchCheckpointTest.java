@@ -0,0 +1,60 @@
+package org.nanopub.extra.server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+public class FetchCheckpointTest {
+
+	@Test
+	public void testResume() throws Exception {
+		File checkpointFile = File.createTempFile("nanopub-checkpoint", ".txt");
+		File outputFile = File.createTempFile("nanopub-checkpoint", ".trig");
+		try {
+			// A run that was killed after the first batch, while writing the second one:
+			String completeBatch = "Q http://example.org/index\nW RA1\nL 4\n";
+			write(checkpointFile, completeBatch + "W RA2\nP http://exa", false);
+			write(outputFile, "np1 np2 np", false);
+
+			FetchCheckpoint c = new FetchCheckpoint(checkpointFile, outputFile);
+			assert c.isResumed();
+			assert c.isWritten("RA1");
+			assert !c.isWritten("RA2");
+			assert c.getOutputLength() == 4;
+			assert c.takePendingIndexUris().contains("http://example.org/index");
+			assert checkpointFile.length() == completeBatch.length();
+			c.truncateOutputFile();
+			assert read(outputFile).equals("np1 ");
+
+			write(outputFile, "np2 ", true);
+			c.nanopubWritten("RA2");
+			c.close();
+
+			c = new FetchCheckpoint(checkpointFile, outputFile);
+			assert c.isWritten("RA1");
+			assert c.isWritten("RA2");
+			assert c.getOutputLength() == 8;
+			c.delete();
+			assert !checkpointFile.exists();
+		} finally {
+			checkpointFile.delete();
+			outputFile.delete();
+		}
+	}
+
+	private static void write(File file, String content, boolean append) throws Exception {
+		FileOutputStream out = new FileOutputStream(file, append);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String read(File file) throws Exception {
+		return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+	}
+
+}
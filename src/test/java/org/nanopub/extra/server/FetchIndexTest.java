@@ -0,0 +1,221 @@
+package org.nanopub.extra.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.Test;
+import org.nanopub.Nanopub;
+import org.nanopub.NanopubImpl;
+import org.nanopub.NanopubWriter;
+import org.nanopub.extra.index.NanopubIndex;
+import org.nanopub.extra.index.SimpleIndexCreator;
+
+import net.trustyuri.TrustyUriUtils;
+
+public class FetchIndexTest {
+
+	private static final String baseUri = "http://example.org/np/";
+
+	@Test
+	public void testRetryOnFailedServer() throws Exception {
+		Map<String,Nanopub> indexes = new HashMap<>();
+		List<String> elements = makeElementUris(0, 50);
+		String indexUri = makeIndex(elements, new ArrayList<String>(), indexes);
+
+		RecordingWriter writer = new RecordingWriter();
+		StubFetchIndex fetchIndex = new StubFetchIndex(indexUri, writer, false, indexes, "http://s1.example.org/", "http://s2.example.org/");
+		fetchIndex.failingServers.add("http://s1.example.org/");
+		fetchIndex.run();
+
+		// All requests to the failing server are retried on the other one:
+		assert fetchIndex.getRequestCount("http://s1.example.org/") > 0;
+		assert writer.getWriteCount(getContentNanopub().getUri().stringValue()) == 50;
+		for (String uri : elements) {
+			assert fetchIndex.fetched.get(TrustyUriUtils.getArtifactCode(uri)).get() == 1;
+		}
+	}
+
+	@Test
+	public void testSiblingCancellation() throws Exception {
+		Map<String,Nanopub> indexes = new HashMap<>();
+		List<String> elements = makeElementUris(0, 20);
+		String subIndexUri = makeIndex(elements, new ArrayList<String>(), indexes);
+		String indexUri = makeIndex(new ArrayList<String>(), Arrays.asList(subIndexUri), indexes);
+
+		RecordingWriter writer = new RecordingWriter();
+		StubFetchIndex fetchIndex = new StubFetchIndex(indexUri, writer, true, indexes,
+				"http://s1.example.org/", "http://s2.example.org/", "http://s3.example.org/");
+		// Index requests take a while, so the three sibling tasks for the subindex run at the same time:
+		fetchIndex.indexDelayMillis = 200;
+		fetchIndex.run();
+
+		assert fetchIndex.fetched.get(TrustyUriUtils.getArtifactCode(subIndexUri)).get() == 3;
+		// Only the first result is used, and the other siblings are cancelled:
+		assert writer.getWriteCount(indexUri) == 1;
+		assert writer.getWriteCount(subIndexUri) == 1;
+		assert writer.getWriteCount(getContentNanopub().getUri().stringValue()) == 20;
+		for (String uri : elements) {
+			assert fetchIndex.fetched.get(TrustyUriUtils.getArtifactCode(uri)).get() == 1;
+		}
+	}
+
+	@Test
+	public void testMaxPendingTasks() throws Exception {
+		Map<String,Nanopub> indexes = new HashMap<>();
+		int subIndexCount = 8;
+		int elementCount = NanopubIndex.MAX_SIZE;
+		List<String> subIndexUris = new ArrayList<>();
+		for (int i = 0 ; i < subIndexCount ; i++) {
+			subIndexUris.add(makeIndex(makeElementUris(i * elementCount, elementCount), new ArrayList<String>(), indexes));
+		}
+		String indexUri = makeIndex(new ArrayList<String>(), subIndexUris, indexes);
+
+		RecordingWriter writer = new RecordingWriter();
+		StubFetchIndex fetchIndex = new StubFetchIndex(indexUri, writer, false, indexes, "http://s1.example.org/", "http://s2.example.org/");
+		writer.fetchIndex = fetchIndex;
+		fetchIndex.run();
+
+		assert writer.getWriteCount(getContentNanopub().getUri().stringValue()) == subIndexCount * elementCount;
+		assert fetchIndex.fetched.size() == subIndexCount * elementCount + subIndexCount + 1;
+		// The elements of further fetched subindexes are only added when there is room for them:
+		assert writer.maxTaskCount > 0;
+		assert writer.maxTaskCount <= FetchIndex.maxPendingTasks + elementCount + 3 * subIndexCount;
+	}
+
+	private static List<String> makeElementUris(int start, int count) {
+		List<String> uris = new ArrayList<>();
+		for (int i = start ; i < start + count ; i++) {
+			uris.add(baseUri + "RA" + String.format("%043d", i));
+		}
+		return uris;
+	}
+
+	private static String makeIndex(List<String> elementUris, List<String> subIndexUris, final Map<String,Nanopub> indexes) {
+		SimpleIndexCreator indexCreator = new SimpleIndexCreator(true) {
+
+			@Override
+			public void handleIncompleteIndex(NanopubIndex npi) {
+				indexes.put(TrustyUriUtils.getArtifactCode(npi.getUri().stringValue()), npi);
+			}
+
+			@Override
+			public void handleCompleteIndex(NanopubIndex npi) {
+				indexes.put(TrustyUriUtils.getArtifactCode(npi.getUri().stringValue()), npi);
+			}
+
+		};
+		indexCreator.setBaseUri(baseUri);
+		indexCreator.setTitle("Test index");
+		for (String uri : elementUris) {
+			indexCreator.addElement(SimpleValueFactory.getInstance().createIRI(uri));
+		}
+		for (String uri : subIndexUris) {
+			indexCreator.addSubIndex(SimpleValueFactory.getInstance().createIRI(uri));
+		}
+		indexCreator.finalizeNanopub();
+		return indexCreator.getCompleteIndexUri().stringValue();
+	}
+
+	private static Nanopub contentNanopub;
+
+	private static synchronized Nanopub getContentNanopub() throws Exception {
+		if (contentNanopub == null) {
+			contentNanopub = new NanopubImpl(new File("src/main/resources/testsuite/valid/simple1.trig"));
+		}
+		return contentNanopub;
+	}
+
+
+	// Answers from the given indexes and one content nanopub instead of contacting servers:
+	private static class StubFetchIndex extends FetchIndex {
+
+		private final Map<String,Nanopub> indexes;
+		private final List<String> failingServers = new ArrayList<>();
+		private final Map<String,AtomicInteger> requests = new ConcurrentHashMap<>();
+		private final Map<String,AtomicInteger> fetched = new ConcurrentHashMap<>();
+		private volatile long indexDelayMillis = 0;
+
+		StubFetchIndex(String indexUri, NanopubWriter writer, boolean writeIndex, Map<String,Nanopub> indexes, String... serverUrls) {
+			super(indexUri, writer, writeIndex, true, makeServers(serverUrls));
+			this.indexes = indexes;
+		}
+
+		@Override
+		Nanopub fetchNanopub(String artifactCode, String serverUrl) throws Exception {
+			count(requests, serverUrl);
+			if (failingServers.contains(serverUrl)) {
+				throw new IOException("Server is down");
+			}
+			Nanopub np;
+			if (indexes.containsKey(artifactCode)) {
+				if (indexDelayMillis > 0) Thread.sleep(indexDelayMillis);
+				np = indexes.get(artifactCode);
+			} else {
+				np = getContentNanopub();
+			}
+			count(fetched, artifactCode);
+			return np;
+		}
+
+		int getRequestCount(String serverUrl) {
+			AtomicInteger c = requests.get(serverUrl);
+			return (c == null ? 0 : c.get());
+		}
+
+		private static void count(Map<String,AtomicInteger> counts, String key) {
+			counts.putIfAbsent(key, new AtomicInteger());
+			counts.get(key).incrementAndGet();
+		}
+
+		private static List<ServerInfo> makeServers(String... serverUrls) {
+			List<ServerInfo> servers = new ArrayList<>();
+			for (String url : serverUrls) {
+				ServerInfo si = new ServerInfo();
+				si.publicUrl = url;
+				servers.add(si);
+			}
+			return servers;
+		}
+
+	}
+
+
+	// Counts the nanopubs instead of writing them:
+	private static class RecordingWriter extends NanopubWriter {
+
+		private final Map<String,Integer> writeCounts = new HashMap<>();
+		private FetchIndex fetchIndex;
+		private int maxTaskCount = 0;
+
+		RecordingWriter() {
+			super(new ByteArrayOutputStream(), RDFFormat.TRIG);
+		}
+
+		@Override
+		public synchronized void write(Nanopub np) {
+			String uri = np.getUri().stringValue();
+			writeCounts.put(uri, getWriteCount(uri) + 1);
+			// Called from the thread that runs the fetching:
+			if (fetchIndex != null) {
+				maxTaskCount = Math.max(maxTaskCount, fetchIndex.getTaskCount());
+			}
+		}
+
+		synchronized int getWriteCount(String uri) {
+			Integer c = writeCounts.get(uri);
+			return (c == null ? 0 : c);
+		}
+
+	}
+
+}
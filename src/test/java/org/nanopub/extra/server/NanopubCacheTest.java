@@ -0,0 +1,120 @@
+package org.nanopub.extra.server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.Test;
+import org.nanopub.Nanopub;
+import org.nanopub.NanopubImpl;
+import org.nanopub.trusty.MakeTrustyNanopub;
+
+import net.trustyuri.TrustyUriUtils;
+
+public class NanopubCacheTest {
+
+	@Test
+	public void runTest() throws Exception {
+		File dir = Files.createTempDirectory("nanopub-cache-test").toFile();
+		try {
+			List<Nanopub> nps = makeNanopubs(6);
+			List<String> acs = new ArrayList<>();
+			for (Nanopub np : nps) {
+				acs.add(TrustyUriUtils.getArtifactCode(np.getUri().toString()));
+			}
+
+			// All nanopubs have the same size, so there is room for four and a half of them:
+			NanopubCache probe = new NanopubCache(new File(dir, "probe"), NanopubCache.defaultMaxSize);
+			probe.put(nps.get(0));
+			long npSize = probe.getTotalSize();
+			assert npSize > 0;
+			long maxSize = 4 * npSize + npSize / 2;
+
+			File cacheDir = new File(dir, "cache");
+			NanopubCache cache = new NanopubCache(cacheDir, maxSize);
+			for (int i = 0 ; i < 4 ; i++) {
+				assert cache.get(acs.get(i)) == null;
+				cache.put(nps.get(i));
+			}
+			assert cache.size() == 4;
+			assert cache.getTotalSize() == 4 * npSize;
+			for (String ac : acs.subList(0, 4)) {
+				assert getFile(cacheDir, ac).isFile();
+			}
+			assert cache.get(acs.get(0)).getUri().equals(nps.get(0).getUri());
+
+			// The nanopub that was read is now used more recently than 1, 2, and 3:
+			cache.put(nps.get(4));
+			assert cache.size() == 4;
+			assert !cache.contains(acs.get(1));
+			assert !getFile(cacheDir, acs.get(1)).exists();
+			assert cache.get(acs.get(1)) == null;
+			for (int i : new int[] {0, 2, 3, 4}) {
+				assert cache.contains(acs.get(i));
+			}
+
+			// The order of use is kept in the modification times of the files:
+			getFile(cacheDir, acs.get(0)).setLastModified(1000000);
+			getFile(cacheDir, acs.get(2)).setLastModified(2000000);
+			getFile(cacheDir, acs.get(3)).setLastModified(3000000);
+			getFile(cacheDir, acs.get(4)).setLastModified(4000000);
+			assert cache.get(acs.get(0)) != null;
+			cache = new NanopubCache(cacheDir, maxSize);
+			assert cache.size() == 4;
+			assert cache.getTotalSize() == 4 * npSize;
+			cache.put(nps.get(5));
+			assert !cache.contains(acs.get(2));
+			assert !getFile(cacheDir, acs.get(2)).exists();
+			for (int i : new int[] {0, 3, 4, 5}) {
+				assert cache.contains(acs.get(i));
+			}
+
+			// Broken files and files with another nanopub are removed when read:
+			FileOutputStream out = new FileOutputStream(getFile(cacheDir, acs.get(3)));
+			out.write("broken".getBytes("UTF-8"));
+			out.close();
+			assert cache.get(acs.get(3)) == null;
+			assert !cache.contains(acs.get(3));
+			assert !getFile(cacheDir, acs.get(3)).exists();
+			Files.copy(getFile(cacheDir, acs.get(5)).toPath(), getFile(cacheDir, acs.get(4)).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			assert cache.get(acs.get(4)) == null;
+			assert !cache.contains(acs.get(4));
+			assert !getFile(cacheDir, acs.get(4)).exists();
+			assert cache.size() == 2;
+			assert cache.getTotalSize() == 2 * npSize;
+			assert cache.get(acs.get(5)).getUri().equals(nps.get(5).getUri());
+		} finally {
+			delete(dir);
+		}
+	}
+
+	private static List<Nanopub> makeNanopubs(int n) throws Exception {
+		String template = new String(Files.readAllBytes(new File("src/main/resources/testsuite/valid/simple1.trig").toPath()), "UTF-8");
+		List<Nanopub> nps = new ArrayList<>();
+		for (int i = 0 ; i < n ; i++) {
+			String s = template.replace("http://example.org/nanopub-validator-example/", "http://example.org/np" + i + "/");
+			nps.add(MakeTrustyNanopub.transform(new NanopubImpl(s, RDFFormat.TRIG)));
+		}
+		return nps;
+	}
+
+	private static File getFile(File cacheDir, String artifactCode) {
+		return new File(cacheDir, artifactCode.substring(0, 2) + "/" + artifactCode.substring(2, 4) + "/" +
+				artifactCode.substring(4, 6) + "/" + artifactCode.substring(6));
+	}
+
+	private static void delete(File f) {
+		File[] children = f.listFiles();
+		if (children != null) {
+			for (File c : children) {
+				delete(c);
+			}
+		}
+		f.delete();
+	}
+
+}
@@ -0,0 +1,94 @@
+package org.nanopub.extra.server;
+
+import org.junit.Test;
+
+public class ServerStatsTest {
+
+	private static final long minOpenMillis = 10 * 1000;
+
+	@Test
+	public void testFailuresWhileOpen() throws Exception {
+		ServerStats stats = new ServerStats();
+		for (int i = 0 ; i < 20 ; i++) {
+			stats.requestStarted();
+		}
+		for (int i = 0 ; i < 5 ; i++) {
+			stats.requestTimedOut(false, 1000);
+		}
+		assert stats.isCircuitOpen();
+		// The requests that were started before the circuit opened don't make the waiting time longer:
+		for (int i = 0 ; i < 15 ; i++) {
+			stats.requestTimedOut(false, 1000);
+		}
+		assert stats.getLoad() == 0;
+		long millis = stats.getMillisUntilAvailable();
+		assert millis > 0 && millis <= minOpenMillis;
+	}
+
+	@Test
+	public void testTrialRequest() throws Exception {
+		ServerStats stats = new ServerStats();
+		for (int i = 0 ; i < 5 ; i++) {
+			stats.requestStarted();
+			stats.requestFailed(false, 100);
+		}
+		assert stats.isCircuitOpen();
+		assert !stats.hasCapacity();
+		waitUntilAvailable(stats);
+		// The trial request fails, so the waiting time is doubled:
+		assert stats.requestStarted();
+		assert !stats.hasCapacity();
+		stats.requestFailed(true, 100);
+		assert stats.isCircuitOpen();
+		assert stats.getMillisUntilAvailable() > minOpenMillis;
+	}
+
+	@Test
+	public void testAbortedTrialRequest() throws Exception {
+		ServerStats stats = new ServerStats();
+		for (int i = 0 ; i < 5 ; i++) {
+			stats.requestStarted();
+			stats.requestFailed(false, 100);
+		}
+		waitUntilAvailable(stats);
+		assert stats.requestStarted();
+		stats.requestAborted(true);
+		// Another trial request can be made, and it closes the circuit when it succeeds:
+		assert stats.hasCapacity();
+		assert stats.requestStarted();
+		stats.requestSucceeded(100);
+		assert !stats.isCircuitOpen();
+		assert stats.hasCapacity();
+	}
+
+	@Test
+	public void testOtherRequestDuringTrial() throws Exception {
+		ServerStats stats = new ServerStats();
+		for (int i = 0 ; i < 5 ; i++) {
+			stats.requestStarted();
+			stats.requestFailed(false, 100);
+		}
+		waitUntilAvailable(stats);
+		assert stats.requestStarted();
+		// Another request that is not the trial request doesn't end the trial when aborted or failed:
+		assert !stats.requestStarted();
+		stats.requestAborted(false);
+		assert !stats.hasCapacity();
+		assert !stats.requestStarted();
+		stats.requestFailed(false, 100);
+		assert stats.isCircuitOpen();
+		assert stats.getMillisUntilAvailable() == -1;
+		// When the trial request is aborted, another one can be made:
+		stats.requestAborted(true);
+		assert stats.hasCapacity();
+		assert stats.requestStarted();
+	}
+
+	private static void waitUntilAvailable(ServerStats stats) throws InterruptedException {
+		long millis;
+		while ((millis = stats.getMillisUntilAvailable()) > 0) {
+			Thread.sleep(millis);
+		}
+	}
+
+}